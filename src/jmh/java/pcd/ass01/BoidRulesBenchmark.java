@@ -0,0 +1,110 @@
+package pcd.ass01;
+
+import org.openjdk.jmh.annotations.*;
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static pcd.ass01.BoidsSimulation.*;
+
+/**
+ *
+ * Per-boid cost of the flocking rules. Each invocation handles the next
+ * boid of a fixed random sample of the flock, so the figures are per boid.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoidRulesBenchmark {
+
+    private static final int SAMPLE = 1024;
+
+    @Param({"1000", "10000", "50000"})
+    public int nBoids;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public FlockGenerator.Layout layout;
+
+    private Snapshot snap;
+    private BoidsView boids;
+    private int[] sample;
+    private List<Integer>[] nearby;
+    private int next;
+    private final double[] steering = new double[2];
+
+    @Setup
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setup() {
+        boids = FlockGenerator.generate(nBoids, 42, layout, ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, MAX_SPEED).view();
+        SpatialGrid grid = SpatialGrid.build(boids, -ENVIRONMENT_WIDTH/2.0, -ENVIRONMENT_HEIGHT/2.0,
+                ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, PERCEPTION_RADIUS);
+        snap = new Snapshot(0, grid, SEPARATION_WEIGHT, ALIGNMENT_WEIGHT, COHESION_WEIGHT,
+                PERCEPTION_RADIUS, AVOID_RADIUS, MAX_SPEED);
+
+        Random random = new Random(7);
+        sample = new int[Math.min(SAMPLE, nBoids)];
+        nearby = new List[sample.length];
+        for (int s = 0; s < sample.length; s++) {
+            sample[s] = random.nextInt(nBoids);
+            nearby[s] = BoidRules.getNearbyBoids(snap, sample[s], pos(sample[s]));
+        }
+    }
+
+    private int nextSample() {
+        int s = next;
+        next = (next + 1) % sample.length;
+        return s;
+    }
+
+    private P2d pos(int id) {
+        return new P2d(boids.x(id), boids.y(id));
+    }
+
+    private V2d vel(int id) {
+        return new V2d(boids.vx(id), boids.vy(id));
+    }
+
+    @Benchmark
+    public List<Integer> getNearbyBoids() {
+        int id = sample[nextSample()];
+        return BoidRules.getNearbyBoids(snap, id, pos(id));
+    }
+
+    @Benchmark
+    public V2d calculateSeparation() {
+        int s = nextSample();
+        return BoidRules.calculateSeparation(boids, nearby[s], pos(sample[s]), snap);
+    }
+
+    @Benchmark
+    public V2d calculateAlignment() {
+        int s = nextSample();
+        return BoidRules.calculateAlignment(boids, nearby[s], vel(sample[s]));
+    }
+
+    @Benchmark
+    public V2d calculateCohesion() {
+        int s = nextSample();
+        return BoidRules.calculateCohesion(boids, nearby[s], pos(sample[s]));
+    }
+
+    @Benchmark
+    public V2d updateVelocity() {
+        int id = sample[nextSample()];
+        return BoidRules.updateVelocity(snap, id, pos(id), vel(id));
+    }
+
+    /** Fused kernel; run with -prof gc to check that it does not allocate. */
+    @Benchmark
+    public double[] steer() {
+        int id = sample[nextSample()];
+        BoidRules.steer(snap, id, boids.x(id), boids.y(id), boids.vx(id), boids.vy(id), steering);
+        return steering;
+    }
+}
@@ -0,0 +1,56 @@
+package pcd.ass01;
+
+import org.openjdk.jmh.annotations.*;
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static pcd.ass01.BoidsSimulation.*;
+
+/**
+ *
+ * Cost of the flocking kernels over a whole flock.
+ * The vector kernel is measured only in builds with both the jmh and the
+ * vector profiles; otherwise it falls back to the scalar one.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class KernelBenchmark {
+
+    @Param({"10000", "50000"})
+    public int nBoids;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public FlockGenerator.Layout layout;
+
+    @Param({"scalar", "vector"})
+    public String kernelName;
+
+    private FlockingKernel kernel;
+    private Snapshot snap;
+    private BoidsView boids;
+    private final double[] steering = new double[2];
+
+    @Setup
+    public void setup() {
+        kernel = FlockingKernel.byName(kernelName);
+        boids = FlockGenerator.generate(nBoids, 42, layout, ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, MAX_SPEED).view();
+        snap = new WorldParams(ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, PERCEPTION_RADIUS, AVOID_RADIUS, MAX_SPEED)
+                .snapshot(0, boids, SEPARATION_WEIGHT, ALIGNMENT_WEIGHT, COHESION_WEIGHT);
+    }
+
+    @Benchmark
+    public double flock() {
+        double acc = 0;
+        for (int i = 0; i < boids.size(); i++) {
+            kernel.steer(snap, i, boids.x(i), boids.y(i), boids.vx(i), boids.vy(i), steering);
+            acc += steering[0];
+        }
+        return acc / boids.size();
+    }
+}
@@ -0,0 +1,55 @@
+package pcd.ass01;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static pcd.ass01.BoidsSimulation.*;
+
+/**
+ *
+ * Cost of a fork/join step with the boids kept in Morton order or in id
+ * order (see MortonLayout), once the flock no longer fits in the caches.
+ * The gain comes from fewer cache misses: run with -prof perfnorm, where
+ * perf is available, to see L1-dcache-load-misses and LLC-load-misses per step.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutBenchmark {
+
+    @Param({"50000", "200000"})
+    public int nBoids;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public FlockGenerator.Layout layout;
+
+    @Param({"morton", "id"})
+    public String order;
+
+    private ForkJoinEngine engine;
+    private long tick;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        System.setProperty("pcd.boids.layout", order);
+        WorldParams params = new WorldParams(ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, PERCEPTION_RADIUS, AVOID_RADIUS, MAX_SPEED);
+        engine = new ForkJoinEngine(params, BOID_WORKERS);
+        engine.setWeights(SEPARATION_WEIGHT, ALIGNMENT_WEIGHT, COHESION_WEIGHT);
+        engine.start(FlockGenerator.generate(nBoids, 42, layout, ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, MAX_SPEED).view());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.stop();
+    }
+
+    @Benchmark
+    public BoidsView step() {
+        return engine.step(++tick).toCompletableFuture().join();
+    }
+}
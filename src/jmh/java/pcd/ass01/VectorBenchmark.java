@@ -0,0 +1,60 @@
+package pcd.ass01;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * Cost of the P2d/V2d operations used by the flocking rules.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VectorBenchmark {
+
+    private P2d p = new P2d(12.5, -40.25);
+    private P2d q = new P2d(-3.75, 18.0);
+    private V2d v = new V2d(1.5, -2.25);
+    private V2d w = new V2d(-0.5, 3.0);
+    private double factor = 1.7;
+
+    @Benchmark
+    public P2d pointSum() {
+        return p.sum(v);
+    }
+
+    @Benchmark
+    public V2d pointSub() {
+        return p.sub(q);
+    }
+
+    @Benchmark
+    public double pointDistance() {
+        return p.distance(q);
+    }
+
+    @Benchmark
+    public V2d vectorSum() {
+        return v.sum(w);
+    }
+
+    @Benchmark
+    public V2d vectorMul() {
+        return v.mul(factor);
+    }
+
+    @Benchmark
+    public double vectorAbs() {
+        return v.abs();
+    }
+
+    @Benchmark
+    public V2d vectorNormalized() {
+        return v.getNormalized();
+    }
+}
@@ -0,0 +1,95 @@
+package pcd.ass01;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import org.openjdk.jmh.annotations.*;
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static pcd.ass01.BoidsSimulation.*;
+
+/**
+ *
+ * Latency of a whole WorldActor tick, from TickGuardian to RenderFrame.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorldTickBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int nBoids;
+
+    @Param({"UNIFORM", "CLUSTERED"})
+    public FlockGenerator.Layout layout;
+
+    @Param({"ACTORS", "FORK_JOIN"})
+    public EngineType engine;
+
+    private ActorSystem system;
+    private ActorRef world;
+    private ActorRef probe;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        system = ActorSystem.create("WorldTickBenchmark");
+        world = system.actorOf(Props.create(WorldActor.class,
+                ALIGNMENT_WEIGHT,
+                COHESION_WEIGHT,
+                PERCEPTION_RADIUS,
+                MAX_SPEED,
+                AVOID_RADIUS,
+                ENVIRONMENT_HEIGHT,
+                ENVIRONMENT_WIDTH,
+                SEPARATION_WEIGHT,
+                BOID_WORKERS,
+                engine));
+        probe = system.actorOf(Props.create(ProbeActor.class));
+        world.tell(new GuardianActorAttachment(probe), ActorRef.noSender());
+        CompletableFuture<Object> ready = ProbeActor.expect();
+        world.tell(new StartSimulation(nBoids, 42, layout), ActorRef.noSender());
+        ready.get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.terminate();
+    }
+
+    @Benchmark
+    public Object tick() throws Exception {
+        CompletableFuture<Object> frame = ProbeActor.expect();
+        world.tell(new TickGuardian(), probe);
+        return frame.get();
+    }
+
+    /**
+     * Stands in for the GuardianActor and completes the pending
+     * future when the world reports back.
+     */
+    public static class ProbeActor extends AbstractActor {
+
+        private static volatile CompletableFuture<Object> pending = new CompletableFuture<>();
+
+        static CompletableFuture<Object> expect() {
+            pending = new CompletableFuture<>();
+            return pending;
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                    .match(WorldReady.class, msg -> pending.complete(msg))
+                    .match(RenderFrame.class, msg -> pending.complete(msg))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package pcd.ass01;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorRefFactory;
+import akka.actor.Props;
+import akka.pattern.Patterns;
+import pcd.ass01.SimulationMessages.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+
+/**
+ *
+ * Engine backed by actors: a StepCoordinatorActor spawns the boid
+ * actors and collects their replies, one ask per tick.
+ * With nWorkers > 0 the boids are split in contiguous slices, each one
+ * updated by a BoidWorkerActor and resized between ticks by a LoadBalancer;
+ * with nWorkers == 0 every boid gets its own BoidActor.
+ *
+ */
+public class ActorEngine implements SimulationEngine {
+
+    private static final Duration STEP_TIMEOUT = Duration.ofMinutes(1);
+
+    private final ActorRefFactory context;
+    protected final WorldParams params;
+    protected final int nWorkers;
+
+    private ActorRef coordinator;
+    private volatile BoidsView state;
+    private volatile double sepW, aliW, cohW;
+
+    public ActorEngine(ActorRefFactory context, WorldParams params, int nWorkers) {
+        this.context = context;
+        this.params = params;
+        this.nWorkers = nWorkers;
+    }
+
+    @Override
+    public void start(BoidsView initial) {
+        stop();
+        state = initial;
+        coordinator = context.actorOf(coordinatorProps(initial));
+    }
+
+    /** The coordinator answers each RunStep with a StepCompleted. */
+    protected Props coordinatorProps(BoidsView initial) {
+        return Props.create(StepCoordinatorActor.class, params, nWorkers, initial);
+    }
+
+    @Override
+    public CompletionStage<BoidsView> step(long tickId) {
+        return Patterns.ask(coordinator, new RunStep(tickId, sepW, aliW, cohW), STEP_TIMEOUT)
+                .thenApply(reply -> {
+                    state = ((StepCompleted) reply).boids();
+                    return state;
+                });
+    }
+
+    @Override
+    public BoidsView state() {
+        return state;
+    }
+
+    @Override
+    public void setWeights(double sepW, double aliW, double cohW) {
+        this.sepW = sepW;
+        this.aliW = aliW;
+        this.cohW = cohW;
+    }
+
+    @Override
+    public void stop() {
+        if (coordinator != null) {
+            context.stop(coordinator);
+            coordinator = null;
+        }
+    }
+}
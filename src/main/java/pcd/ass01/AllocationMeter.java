@@ -0,0 +1,80 @@
+package pcd.ass01;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ *
+ * Bytes allocated on the heap by the whole JVM, accounted by the garbage
+ * collector: the bytes freed by every collection plus the heap in use.
+ * Unlike the per-thread counters of ThreadMXBean, it includes the threads
+ * that ended, e.g. fork/join workers, and virtual threads, which have no
+ * counters of their own. Only differences between two calls are meaningful,
+ * with the granularity of the allocation buffers of the threads.
+ *
+ */
+public final class AllocationMeter {
+
+    /* how long a call waits for the notifications of the collections already done */
+    private static final long NOTIFICATION_WAIT_MS = 200;
+
+    private static final Set<String> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .map(MemoryPoolMXBean::getName)
+            .collect(Collectors.toSet());
+    private static final AtomicLong freedBytes = new AtomicLong();
+    private static final AtomicLong notifiedCollections = new AtomicLong();
+    private static final long collectionsBefore;
+
+    static {
+        long collections = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener((notification, handback) -> {
+                    if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) return;
+                    var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+                    freedBytes.addAndGet(heapUsed(info.getMemoryUsageBeforeGc()) - heapUsed(info.getMemoryUsageAfterGc()));
+                    notifiedCollections.incrementAndGet();
+                }, null, null);
+            }
+            collections += Math.max(0, gc.getCollectionCount());
+        }
+        collectionsBefore = collections;
+    }
+
+    private AllocationMeter() {}
+
+    /** Bytes allocated on the heap since an arbitrary origin, the same for all the calls. */
+    public static long allocatedBytes() {
+        /* notifications are delivered asynchronously: the bytes freed by a collection just done may be missing */
+        long deadline = System.nanoTime() + NOTIFICATION_WAIT_MS * 1_000_000;
+        while (notifiedCollections.get() < collections() - collectionsBefore && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        return freedBytes.get() + ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long collections() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(gc -> Math.max(0, gc.getCollectionCount()))
+                .sum();
+    }
+
+    private static long heapUsed(Map<String, MemoryUsage> pools) {
+        return pools.entrySet().stream()
+                .filter(pool -> HEAP_POOLS.contains(pool.getKey()))
+                .mapToLong(pool -> pool.getValue().getUsed())
+                .sum();
+    }
+}
@@ -0,0 +1,79 @@
+package pcd.ass01;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *
+ * Reusable (cyclic) barrier monitor for a fixed number of parties.
+ * The last party to arrive runs the barrier action, if any, before
+ * releasing the others. Once broken, every current and future await
+ * returns false, so that waiting threads can terminate. An action that
+ * throws breaks the barrier, and the exception reaches the party that ran it.
+ *
+ */
+public final class Barrier {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition tripped = lock.newCondition();
+    private final int parties;
+    private final Runnable action;
+
+    private int arrived = 0;
+    private long generation = 0;
+    private boolean broken = false;
+
+    public Barrier(int parties, Runnable action) {
+        this.parties = parties;
+        this.action = action;
+    }
+
+    public Barrier(int parties) {
+        this(parties, null);
+    }
+
+    /**
+     * Waits until all the parties arrived.
+     * @return false if the barrier has been broken
+     */
+    public boolean await() throws InterruptedException {
+        lock.lock();
+        try {
+            if (broken) return false;
+            long arrivalGeneration = generation;
+            arrived++;
+            if (arrived == parties) {
+                if (action != null) {
+                    try {
+                        action.run();
+                    } catch (RuntimeException | Error e) {
+                        /* otherwise the others would wait for a generation that never comes */
+                        breakBarrier();
+                        throw e;
+                    }
+                }
+                arrived = 0;
+                generation++;
+                tripped.signalAll();
+                return true;
+            }
+            while (arrivalGeneration == generation && !broken) {
+                tripped.await();
+            }
+            return arrivalGeneration != generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Releases all the waiting parties, making every await fail from now on. */
+    public void breakBarrier() {
+        lock.lock();
+        try {
+            broken = true;
+            tripped.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Growable structure of arrays of boids with their ids, used by the
+ * region actors to collect the boids they own and the ones they send.
+ *
+ */
+final class BoidBuffer {
+
+    private int[] ids;
+    private double[] x, y, vx, vy;
+    private int size = 0;
+
+    BoidBuffer() {
+        this(16);
+    }
+
+    BoidBuffer(int capacity) {
+        capacity = Math.max(1, capacity);
+        ids = new int[capacity];
+        x = new double[capacity];
+        y = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+    }
+
+    int size() { return size; }
+
+    int id(int i) { return ids[i]; }
+
+    double x(int i) { return x[i]; }
+
+    double y(int i) { return y[i]; }
+
+    double vx(int i) { return vx[i]; }
+
+    double vy(int i) { return vy[i]; }
+
+    void add(int id, double x, double y, double vx, double vy) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.vx = Arrays.copyOf(this.vx, capacity);
+            this.vy = Arrays.copyOf(this.vy, capacity);
+        }
+        ids[size] = id;
+        this.x[size] = x;
+        this.y[size] = y;
+        this.vx[size] = vx;
+        this.vy[size] = vy;
+        size++;
+    }
+
+    void addAll(BoidSet boids) {
+        for (int i = 0; i < boids.size(); i++) {
+            add(boids.ids()[i], boids.x()[i], boids.y()[i], boids.vx()[i], boids.vy()[i]);
+        }
+    }
+
+    /** Overwrites the state of the i-th boid, keeping its id. */
+    void set(int i, double x, double y, double vx, double vy) {
+        this.x[i] = x;
+        this.y[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /** Copy of the current content, safe to send. */
+    BoidSet toSet() {
+        return new BoidSet(Arrays.copyOf(ids, size), Arrays.copyOf(x, size), Arrays.copyOf(y, size),
+                Arrays.copyOf(vx, size), Arrays.copyOf(vy, size));
+    }
+}
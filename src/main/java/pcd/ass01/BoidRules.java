@@ -0,0 +1,214 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Flocking rules shared by the actors that update boids:
+ * velocity update from a snapshot of the flock and position update
+ * with toroidal wrap.
+ * The per-rule methods are the reference implementation; steer and
+ * move are the fused, allocation-free versions used on the hot path
+ * and give bit-identical results.
+ *
+ */
+final class BoidRules {
+
+    private BoidRules() {}
+
+    /**
+     * Computes separation, alignment and cohesion in a single pass over the
+     * neighbouring cells and stores the new velocity of the boid in out[0], out[1].
+     */
+    static void steer(Snapshot snap, int id, double x, double y, double vx, double vy, double[] out) {
+        SpatialGrid grid = snap.grid();
+        double perceptionRadius = snap.perceptionRadius();
+        double avoidRadius = snap.avoidRadius();
+
+        int nearby = 0, avoided = 0;
+        double sumVx = 0, sumVy = 0, sumX = 0, sumY = 0, sepDx = 0, sepDy = 0;
+        int cx = grid.cellX(x);
+        int cy = grid.cellY(y);
+        int minCx = Math.max(0, cx - 1);
+        int maxCx = Math.min(grid.cols() - 1, cx + 1);
+        int maxCy = Math.min(grid.rows() - 1, cy + 1);
+        for (int gy = Math.max(0, cy - 1); gy <= maxCy; gy++) {
+            /* adjacent cells of a row are contiguous in the grid */
+            int end = grid.cellEnd(maxCx, gy);
+            for (int i = grid.cellStart(minCx, gy); i < end; i++) {
+                if (grid.id(i) == id) continue;
+                double ox = grid.x(i);
+                double oy = grid.y(i);
+                double dx = ox - x;
+                double dy = oy - y;
+                double distance = Math.sqrt(dx*dx + dy*dy);
+                if (distance < perceptionRadius) {
+                    nearby++;
+                    sumVx += grid.vx(i);
+                    sumVy += grid.vy(i);
+                    sumX += ox;
+                    sumY += oy;
+                    if (distance < avoidRadius) {
+                        sepDx += x - ox;
+                        sepDy += y - oy;
+                        avoided++;
+                    }
+                }
+            }
+        }
+        applyRules(snap, x, y, vx, vy, nearby, avoided, sumVx, sumVy, sumX, sumY, sepDx, sepDy, out);
+    }
+
+    /**
+     * Second half of steer, shared by the kernels: turns the sums over the
+     * neighbours (nearby within the perception radius, avoided within the
+     * avoid radius) into the new velocity, written in out.
+     */
+    static void applyRules(Snapshot snap, double x, double y, double vx, double vy, int nearby, int avoided,
+                           double sumVx, double sumVy, double sumX, double sumY,
+                           double sepDx, double sepDy, double[] out) {
+        double sepX = 0, sepY = 0, aliX = 0, aliY = 0, cohX = 0, cohY = 0;
+        if (avoided > 0) {
+            sepDx /= avoided;
+            sepDy /= avoided;
+            double module = Math.sqrt(sepDx*sepDx + sepDy*sepDy);
+            sepX = sepDx / module;
+            sepY = sepDy / module;
+        }
+        if (nearby > 0) {
+            double ax = sumVx / nearby - vx;
+            double ay = sumVy / nearby - vy;
+            double module = Math.sqrt(ax*ax + ay*ay);
+            aliX = ax / module;
+            aliY = ay / module;
+            double hx = sumX / nearby - x;
+            double hy = sumY / nearby - y;
+            module = Math.sqrt(hx*hx + hy*hy);
+            cohX = hx / module;
+            cohY = hy / module;
+        }
+
+        vx = vx + aliX * snap.aliW() + sepX * snap.sepW() + cohX * snap.cohW();
+        vy = vy + aliY * snap.aliW() + sepY * snap.sepW() + cohY * snap.cohW();
+
+        double speed = Math.sqrt(vx*vx + vy*vy);
+        if (speed > snap.maxSpeed()) {
+            vx = vx / speed * snap.maxSpeed();
+            vy = vy / speed * snap.maxSpeed();
+        }
+        out[0] = vx;
+        out[1] = vy;
+    }
+
+    /** Allocation-free updatePosition on a single coordinate. */
+    static double move(double coord, double vel, double min, double max, double size) {
+        coord = coord + vel;
+        if (coord < min) coord = coord + size;
+        if (coord >= max) coord = coord + -size;
+        return coord;
+    }
+
+    static V2d updateVelocity(Snapshot snap, int id, P2d pos, V2d vel) {
+        BoidsView boids = snap.grid().boids();
+        List<Integer> nearbyBoids = getNearbyBoids(snap, id, pos);
+
+        V2d separation = calculateSeparation(boids, nearbyBoids, pos, snap);
+        V2d alignment = calculateAlignment(boids, nearbyBoids, vel);
+        V2d cohesion = calculateCohesion(boids, nearbyBoids, pos);
+
+        vel = vel
+                .sum(alignment.mul(snap.aliW()))
+                .sum(separation.mul(snap.sepW()))
+                .sum(cohesion.mul(snap.cohW()));
+
+        double speed = vel.abs();
+        if (speed > snap.maxSpeed()) {
+            vel = vel.getNormalized().mul(snap.maxSpeed());
+        }
+        return vel;
+    }
+
+    static P2d updatePosition(P2d pos, V2d vel, Bounds msg) {
+        pos = pos.sum(vel);
+
+        if (pos.x() < msg.minX()) pos = pos.sum(new V2d(msg.width(), 0));
+        if (pos.x() >= msg.maxX()) pos = pos.sum(new V2d(-msg.width(), 0));
+        if (pos.y() < msg.minY()) pos = pos.sum(new V2d(0, msg.height()));
+        if (pos.y() >= msg.maxY()) pos = pos.sum(new V2d(0, -msg.height()));
+        return pos;
+    }
+
+    static List<Integer> getNearbyBoids(Snapshot snap, int id, P2d pos) {
+        var list = new ArrayList<Integer>();
+        SpatialGrid grid = snap.grid();
+        BoidsView boids = grid.boids();
+        int cx = grid.cellX(pos.x());
+        int cy = grid.cellY(pos.y());
+        for (int y = Math.max(0, cy - 1); y <= Math.min(grid.rows() - 1, cy + 1); y++) {
+            for (int x = Math.max(0, cx - 1); x <= Math.min(grid.cols() - 1, cx + 1); x++) {
+                for (int i = grid.cellStart(x, y); i < grid.cellEnd(x, y); i++) {
+                    int other = grid.id(i);
+                    if (other != id) {
+                        double distance = pos.distance(new P2d(boids.x(other), boids.y(other)));
+                        if (distance < snap.perceptionRadius()) {
+                            list.add(other);
+                        }
+                    }
+                }
+            }
+        }
+        return list;
+    }
+
+    static V2d calculateAlignment(BoidsView boids, List<Integer> nearbyBoids, V2d vel) {
+        if (nearbyBoids.isEmpty()) return new V2d(0, 0);
+
+        double avgVx = 0, avgVy = 0;
+        for (int other : nearbyBoids) {
+            avgVx += boids.vx(other);
+            avgVy += boids.vy(other);
+        }
+        avgVx /= nearbyBoids.size();
+        avgVy /= nearbyBoids.size();
+
+        return new V2d(avgVx - vel.x(), avgVy - vel.y()).getNormalized();
+    }
+
+    static V2d calculateCohesion(BoidsView boids, List<Integer> nearbyBoids, P2d pos) {
+        if (nearbyBoids.isEmpty()) return new V2d(0, 0);
+
+        double centerX = 0, centerY = 0;
+        for (int other : nearbyBoids) {
+            centerX += boids.x(other);
+            centerY += boids.y(other);
+        }
+        centerX /= nearbyBoids.size();
+        centerY /= nearbyBoids.size();
+
+        return new V2d(centerX - pos.x(), centerY - pos.y()).getNormalized();
+    }
+
+    static V2d calculateSeparation(BoidsView boids, List<Integer> nearbyBoids, P2d pos, Snapshot snap) {
+        double dx = 0, dy = 0;
+        int count = 0;
+        for (int other : nearbyBoids) {
+            P2d otherPos = new P2d(boids.x(other), boids.y(other));
+            double distance = pos.distance(otherPos);
+            if (distance < snap.avoidRadius()) {
+                dx += pos.x() - otherPos.x();
+                dy += pos.y() - otherPos.y();
+                count++;
+            }
+        }
+        if (count > 0) {
+            dx /= count;
+            dy /= count;
+            return new V2d(dx, dy).getNormalized();
+        } else {
+            return new V2d(0, 0);
+        }
+    }
+}
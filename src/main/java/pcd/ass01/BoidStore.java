@@ -0,0 +1,43 @@
+package pcd.ass01;
+
+/**
+ *
+ * Mutable state of the whole flock, kept as a structure of arrays
+ * indexed by boid id, so that updates never allocate.
+ * Consumers outside the owner only get immutable BoidsView copies.
+ *
+ */
+public final class BoidStore {
+
+    private final double[] x, y, vx, vy;
+
+    public BoidStore(int nBoids) {
+        this.x = new double[nBoids];
+        this.y = new double[nBoids];
+        this.vx = new double[nBoids];
+        this.vy = new double[nBoids];
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public void set(int id, double x, double y, double vx, double vy) {
+        this.x[id] = x;
+        this.y[id] = y;
+        this.vx[id] = vx;
+        this.vy[id] = vy;
+    }
+
+    /** Overwrites the boids with ids [from, from + x.length) with the given values. */
+    public void setRange(int from, double[] x, double[] y, double[] vx, double[] vy) {
+        System.arraycopy(x, 0, this.x, from, x.length);
+        System.arraycopy(y, 0, this.y, from, y.length);
+        System.arraycopy(vx, 0, this.vx, from, vx.length);
+        System.arraycopy(vy, 0, this.vy, from, vy.length);
+    }
+
+    public BoidsView view() {
+        return new BoidsView(x.clone(), y.clone(), vx.clone(), vy.clone());
+    }
+}
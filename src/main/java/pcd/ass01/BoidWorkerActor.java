@@ -0,0 +1,58 @@
+package pcd.ass01;
+
+import akka.actor.AbstractActor;
+import pcd.ass01.SimulationMessages.*;
+
+/**
+ *
+ * Actor updating a contiguous slice of the boid ids. Slices are moved
+ * between ticks by the StepCoordinatorActor, so the worker keeps no boids:
+ * on each SliceStep it reads the slice from the snapshot, updates it and
+ * replies with a single BoidBatchUpdate, so messages per tick only depend
+ * on the number of workers.
+ *
+ */
+public class BoidWorkerActor extends AbstractActor {
+
+    private final double[] steering = new double[2];
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(SliceStep.class, this::onSliceStep)
+                .build();
+    }
+
+    private void onSliceStep(SliceStep msg) {
+        Snapshot snap = msg.snapshot();
+        Bounds bounds = msg.bounds();
+        BoidsView boids = snap.grid().boids();
+        int from = msg.from(), n = msg.to() - msg.from();
+        double[] x = new double[n], y = new double[n], vx = new double[n], vy = new double[n];
+        long tickId = snap.tickId();
+        FlightEvents.VelocityPhase velocityEvent = new FlightEvents.VelocityPhase();
+        velocityEvent.begin();
+        long start = System.nanoTime();
+        long cpuStart = LoadBalancer.now();
+        for (int i = 0; i < n; i++) {
+            FlockingKernel.SELECTED.steer(snap, from + i, boids.x(from + i), boids.y(from + i),
+                    boids.vx(from + i), boids.vy(from + i), steering);
+            vx[i] = steering[0];
+            vy[i] = steering[1];
+        }
+        long cost = LoadBalancer.now() - cpuStart;
+        long velocityDone = System.nanoTime();
+        velocityEvent.commit(tickId, n);
+        FlightEvents.PositionPhase positionEvent = new FlightEvents.PositionPhase();
+        positionEvent.begin();
+        for (int i = 0; i < n; i++) {
+            x[i] = BoidRules.move(boids.x(from + i), vx[i], bounds.minX(), bounds.maxX(), bounds.width());
+            y[i] = BoidRules.move(boids.y(from + i), vy[i], bounds.minY(), bounds.maxY(), bounds.height());
+        }
+        positionEvent.commit(tickId, n);
+        Metrics.VELOCITY_PHASE.record(velocityDone - start);
+        Metrics.POSITION_PHASE.record(System.nanoTime() - velocityDone);
+        Metrics.messagesSent(1);
+        getSender().tell(new BoidBatchUpdate(tickId, msg.slice(), from, x, y, vx, vy, cost), getSelf());
+    }
+}
@@ -0,0 +1,269 @@
+package pcd.ass01;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import pcd.ass01.SimulationMessages.*;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static pcd.ass01.BoidsSimulation.*;
+
+/**
+ *
+ * Headless entry point: runs the actor simulation with no GUI and
+ * ticks sent back-to-back, then prints throughput, tick latency
+ * percentiles, allocation rate, memory per boid and, for a cluster,
+ * network traffic.
+ * With --verify it instead checks the selected kernel (-Dpcd.boids.kernel,
+ * -Dpcd.boids.neighbours) against the scalar one over the first ticks, and
+ * exits with status 1 if any velocity differs by more than VERIFY_TOLERANCE;
+ * approximate kernels only report their maximum and mean error.
+ *
+ * Usage: BoidsBenchmark [--boids=N] [--ticks=T] [--warmup=W] [--seed=S] [--workers=K]
+ *                       [--layout=UNIFORM|CLUSTERED] [--engine=actors|regions|fork-join|off-heap|platform-threads|virtual-threads]
+ *                       [--verify]
+ *
+ */
+public class BoidsBenchmark {
+
+    private static final int VERIFY_TICKS = 20;
+    static final double VERIFY_TOLERANCE = 1e-9;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Metrics.registerMBean();
+
+        int nBoids = Integer.parseInt(arg(args, "boids", "1000"));
+        int ticks = Integer.parseInt(arg(args, "ticks", "500"));
+        int warmup = Integer.parseInt(arg(args, "warmup", "50"));
+        long seed = Long.parseLong(arg(args, "seed", "42"));
+        int workers = Integer.parseInt(arg(args, "workers", String.valueOf(BOID_WORKERS)));
+        FlockGenerator.Layout layout = FlockGenerator.Layout.valueOf(arg(args, "layout", "UNIFORM"));
+        EngineType engine = EngineType.parse(arg(args, "engine", "actors"));
+        checkArgs(ticks, warmup);
+
+        if (Arrays.asList(args).contains("--verify")) {
+            System.exit(verifyKernel(nBoids, seed, layout) ? 0 : 1);
+        }
+
+        run(ActorSystem.create("BoidsBenchmark"), nBoids, ticks, warmup, seed, workers, layout, engine);
+    }
+
+    /** Rejects runs with nothing to measure, before any actor system is created. */
+    static void checkArgs(int ticks, int warmup) {
+        if (ticks <= 0) throw new IllegalArgumentException("--ticks must be positive: " + ticks);
+        if (warmup < 0) throw new IllegalArgumentException("--warmup must not be negative: " + warmup);
+    }
+
+    /** Runs the benchmark in the given system, terminated at the end. */
+    static void run(ActorSystem system, int nBoids, int ticks, int warmup, long seed, int workers,
+                    FlockGenerator.Layout layout, EngineType engine) {
+        /* memory held before the flock exists, subtracted to get the bytes per boid */
+        long baseline = BenchmarkActor.retainedBytes();
+        ActorRef world = system.actorOf(Props.create(WorldActor.class,
+                ALIGNMENT_WEIGHT,
+                COHESION_WEIGHT,
+                PERCEPTION_RADIUS,
+                MAX_SPEED,
+                AVOID_RADIUS,
+                ENVIRONMENT_HEIGHT,
+                ENVIRONMENT_WIDTH,
+                SEPARATION_WEIGHT,
+                workers,
+                engine));
+        ActorRef guardian = system.actorOf(Props.create(GuardianActor.class, world, 0L));
+        ActorRef probe = system.actorOf(Props.create(BenchmarkActor.class, guardian, nBoids, ticks, warmup, workers, engine, baseline));
+
+        guardian.tell(new ViewActorAttachment(probe), ActorRef.noSender());
+        world.tell(new GuardianActorAttachment(guardian), ActorRef.noSender());
+        guardian.tell(new StartSimulation(nBoids, seed, layout), ActorRef.noSender());
+    }
+
+    private static boolean verifyKernel(int nBoids, long seed, FlockGenerator.Layout layout) {
+        WorldParams params = new WorldParams(ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, PERCEPTION_RADIUS, AVOID_RADIUS, MAX_SPEED);
+        FlockingKernel kernel = FlockingKernel.forEngine(nBoids, params);
+        String name = kernel == FlockingKernel.SCALAR ? "scalar" : kernel.getClass().getSimpleName();
+        KernelError error = compareWithScalar(kernel, params, nBoids, seed, layout, VERIFY_TICKS);
+
+        boolean approximate = kernel instanceof FarFieldKernel farField && farField.approximate();
+        boolean ok = approximate || error.mismatches() == 0;
+        System.out.printf("VERIFY kernel=%s boids=%d layout=%s ticks=%d max_error=%.3e mean_error=%.3e mismatches=%d %s%n",
+                name, nBoids, layout, VERIFY_TICKS, error.max(), error.mean(),
+                error.mismatches(), approximate ? "APPROXIMATE" : ok ? "OK" : "FAILED");
+        return ok;
+    }
+
+    /**
+     * Difference of the velocities computed by a kernel from those of the scalar
+     * one: maximum and mean over all the boids and ticks, and number of velocities
+     * off by more than VERIFY_TOLERANCE. A NaN counts as an infinite error.
+     */
+    record KernelError(double max, double mean, long mismatches) {}
+
+    /*
+     * Steps the flock with the scalar kernel, comparing at each tick the
+     * velocities of all the boids with those of the given kernel.
+     */
+    static KernelError compareWithScalar(FlockingKernel kernel, WorldParams params, int nBoids, long seed,
+                                         FlockGenerator.Layout layout, int ticks) {
+        Bounds bounds = params.bounds();
+        BoidStore store = FlockGenerator.generate(nBoids, seed, layout, params.width(), params.height(), params.maxSpeed());
+        double[] expected = new double[2], actual = new double[2];
+        double maxError = 0, sumError = 0;
+        long mismatches = 0;
+
+        for (int tick = 0; tick < ticks; tick++) {
+            BoidsView boids = store.view();
+            Snapshot snap = params.snapshot(tick, boids, SEPARATION_WEIGHT, ALIGNMENT_WEIGHT, COHESION_WEIGHT);
+            kernel.prepare(snap);
+            for (int i = 0; i < boids.size(); i++) {
+                FlockingKernel.SCALAR.steer(snap, i, boids.x(i), boids.y(i), boids.vx(i), boids.vy(i), expected);
+                kernel.steer(snap, i, boids.x(i), boids.y(i), boids.vx(i), boids.vy(i), actual);
+                double error = Math.max(Math.abs(expected[0] - actual[0]), Math.abs(expected[1] - actual[1]));
+                if (!(error <= VERIFY_TOLERANCE)) mismatches++;
+                error = Double.isNaN(error) ? Double.POSITIVE_INFINITY : error;
+                maxError = Math.max(maxError, error);
+                sumError += error;
+                store.set(i,
+                        BoidRules.move(boids.x(i), expected[0], bounds.minX(), bounds.maxX(), bounds.width()),
+                        BoidRules.move(boids.y(i), expected[1], bounds.minY(), bounds.maxY(), bounds.height()),
+                        expected[0], expected[1]);
+            }
+        }
+        return new KernelError(maxError, sumError / Math.max(1L, (long) nBoids * ticks), mismatches);
+    }
+
+    /**
+     * Takes the place of the ViewActor: measures the time between
+     * consecutive frames and stops the system after the last tick.
+     */
+    public static class BenchmarkActor extends AbstractActor {
+
+        private final ActorRef guardian;
+        private final int nBoids, ticks, warmup, workers;
+        private final EngineType engine;
+        private final long[] tickNanos;
+        private int frames = 0;
+        private final long baselineBytes;
+        private long lastFrame, startNanos, startAllocated, startWireBytes;
+
+        /** @param baselineBytes retainedBytes() before the flock was created */
+        public BenchmarkActor(ActorRef guardian, int nBoids, int ticks, int warmup, int workers, EngineType engine,
+                              long baselineBytes) {
+            this.guardian = guardian;
+            this.nBoids = nBoids;
+            this.ticks = ticks;
+            this.warmup = warmup;
+            this.workers = workers;
+            this.engine = engine;
+            this.tickNanos = new long[ticks];
+            this.baselineBytes = baselineBytes;
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder()
+                    .match(WorldReady.class, msg -> lastFrame = System.nanoTime())
+                    .match(RenderFrame.class, this::onRenderFrame)
+                    .matchAny(msg -> {})
+                    .build();
+        }
+
+        private void onRenderFrame(RenderFrame msg) {
+            long now = System.nanoTime();
+            msg.boids().release();
+            int measured = frames - warmup;
+            if (measured == 0) {
+                startNanos = now;
+                startAllocated = AllocationMeter.allocatedBytes();
+                startWireBytes = WireMetrics.clusterBytes();
+            } else if (measured > 0) {
+                tickNanos[measured - 1] = now - lastFrame;
+            }
+            lastFrame = now;
+            frames++;
+            if (measured == ticks) {
+                /* before stopping, while the engine still holds the flock */
+                report(now - startNanos, AllocationMeter.allocatedBytes() - startAllocated, WireMetrics.clusterBytes() - startWireBytes);
+                guardian.tell(new StopSimulation(), getSelf());
+                getContext().getSystem().terminate();
+            }
+        }
+
+        private void report(long elapsedNanos, long allocated, long wireBytes) {
+            long[] sorted = tickNanos.clone();
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+            double ticksPerSec = ticks / seconds;
+            double p50 = percentile(sorted, 0.50) / 1e6;
+            double p99 = percentile(sorted, 0.99) / 1e6;
+            double allocMbPerSec = allocated / seconds / (1024 * 1024);
+            double netKbPerTick = wireBytes / 1024.0 / ticks;
+            long heap = heapBytes();
+            long direct = directBytes();
+            double bytesPerBoid = (double) (heap + direct - baselineBytes) / nBoids;
+            long resident = residentBytes();
+            double mb = 1024 * 1024;
+
+            System.out.printf("Engine: %s, boids: %d, workers: %d, ticks: %d (+%d warmup)%n", engine, nBoids, workers, ticks, warmup);
+            System.out.printf("Throughput: %.2f ticks/s%n", ticksPerSec);
+            System.out.printf("Tick latency: p50 %.3f ms, p99 %.3f ms%n", p50, p99);
+            System.out.printf("Allocation rate: %.2f MB/s (accounted by the GC, all threads included)%n", allocMbPerSec);
+            System.out.printf("Network: %.1f KB/tick%n", netKbPerTick);
+            System.out.printf("Memory: heap after GC %.1f MB, direct %.1f MB, %.0f bytes/boid over the baseline, resident %.1f MB%n",
+                    heap / mb, direct / mb, bytesPerBoid, resident / mb);
+            System.out.println("Phases: " + Metrics.summary());
+            System.out.printf("RESULT engine=%s boids=%d workers=%d ticks=%d ticks_per_sec=%.2f p50_ms=%.3f p99_ms=%.3f alloc_mb_per_sec=%.2f net_kb_per_tick=%.1f "
+                            + "heap_mb=%.1f direct_mb=%.1f bytes_per_boid=%.0f rss_mb=%.1f%n",
+                    engine, nBoids, workers, ticks, ticksPerSec, p50, p99, allocMbPerSec, netKbPerTick,
+                    heap / mb, direct / mb, bytesPerBoid, resident / mb);
+        }
+
+        /*
+         * Heap after a full GC plus direct buffers: memory held by live data,
+         * on and off the heap, whose growth with the flock is the cost per boid.
+         */
+        static long retainedBytes() {
+            return heapBytes() + directBytes();
+        }
+
+        private static long heapBytes() {
+            System.gc();
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        /* Memory of the direct buffers, e.g. of an OffHeapBoidStore. */
+        private static long directBytes() {
+            return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                    .filter(pool -> pool.getName().equals("direct"))
+                    .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                    .sum();
+        }
+
+        /* Resident set size of the process, from /proc on Linux; -1 elsewhere. */
+        private static long residentBytes() {
+            try {
+                for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                    if (line.startsWith("VmRSS:")) {
+                        return 1024 * Long.parseLong(line.replaceAll("[^0-9]", ""));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                // not available on this platform
+            }
+            return -1;
+        }
+
+        private static long percentile(long[] sorted, double p) {
+            int idx = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+        }
+    }
+}
@@ -2,20 +2,47 @@ package pcd.ass01;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
-import pcd.ass01.BoidActor.BoidState;
+import pcd.ass01.SimulationMessages.TickRateReport;
 
 public class BoidsPanel extends JPanel {
 
+    private static final int BACKGROUND = 0xFFFFFF;
+    private static final int BOID_COLOR = 0x0000FF;
+    private static final int DOT_SIZE = 5;
+    /* 5px dot, same footprint as fillOval(px, py, 5, 5) */
+    private static final boolean[] DOT = {
+            false, true, true, true, false,
+            true,  true, true, true, true,
+            true,  true, true, true, true,
+            true,  true, true, true, true,
+            false, true, true, true, false
+    };
+    private static final int DENSITY_CELL = 4;
+
 	private final ViewActor view;
     private final double nBoids;
     private final double width;
-    private List<BoidState> boidStates;
+    private BoidsView boids;
     private int framerate;
+    private long droppedFrames;
+    private TickRateReport tickRate;
+    private boolean densityMode = false;
+    private boolean metricsOverlay = false;
+    /* arrival of the frame not painted yet, -1 once painted */
+    private long frameReceivedNanos = -1;
+    private long tickId;
+
+    /* back-buffer reused across frames, written through its int[] raster */
+    private BufferedImage image;
+    private int[] pixels;
+    private int[] density = new int[0];
 
-    public BoidsPanel(ViewActor view, double width, int nBoids, List<BoidState> initialStates) {
-        this.boidStates = initialStates;
+    public BoidsPanel(ViewActor view, double width, int nBoids, BoidsView initialBoids) {
+        this.boids = initialBoids;
         this.nBoids = nBoids;
         this.width = width;
     	this.view = view;
@@ -25,30 +52,177 @@ public class BoidsPanel extends JPanel {
     	this.framerate = framerate;
     }
 
-    public void setState(List<BoidState> boidStates){
-        this.boidStates = boidStates;
+    public void setDroppedFrames(long droppedFrames) {
+        this.droppedFrames = droppedFrames;
+    }
+
+    public void setTickRate(TickRateReport tickRate) {
+        this.tickRate = tickRate;
+    }
+
+    public void setDensityMode(boolean densityMode) {
+        this.densityMode = densityMode;
+        repaint();
+    }
+
+    public void setMetricsOverlay(boolean metricsOverlay) {
+        this.metricsOverlay = metricsOverlay;
+        repaint();
+    }
+
+    /** The previous state is released, as it is no longer painted. */
+    public void setState(BoidsView boids, long tickId, long receivedNanos){
+        if (this.boids != boids) {
+            this.boids.release();
+        }
+        this.boids = boids;
+        this.tickId = tickId;
+        this.frameReceivedNanos = receivedNanos;
     }
 
     @Override
     protected void paintComponent(Graphics g) {
+        FlightEvents.FramePaint event = new FlightEvents.FramePaint();
+        event.begin();
         super.paintComponent(g);
         setBackground(Color.WHITE);
-        
-        var w = view.getWidth();
-        var h = view.getHeight();
-        var xScale = w/ this.width;
 
-        g.setColor(Color.BLUE);
-        for (BoidState boid : boidStates) {
-        	var x = boid.pos().x();
-        	var y = boid.pos().y();
-        	int px = (int)(w/2 + x*xScale);
-        	int py = (int)(h/2 - y*xScale);
-            g.fillOval(px,py, 5, 5);
+        int imageWidth = Math.max(1, getWidth());
+        int imageHeight = Math.max(1, getHeight());
+        if (image == null || image.getWidth() != imageWidth || image.getHeight() != imageHeight) {
+            image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+
+        Arrays.fill(pixels, BACKGROUND);
+        if (densityMode) {
+            drawDensity(imageWidth, imageHeight);
+        } else {
+            drawDots(imageWidth, imageHeight);
         }
-        
+        g.drawImage(image, 0, 0, null);
+
         g.setColor(Color.BLACK);
         g.drawString("Num. Boids: " + this.nBoids, 10, 25);
-        g.drawString("Framerate: " + framerate, 10, 40);
-   }
+        g.drawString("Framerate: " + framerate + ", dropped frames: " + droppedFrames, 10, 40);
+        if (tickRate != null) {
+            String target = Double.isInfinite(tickRate.targetRate()) ? "max" : String.format("%.1f", tickRate.targetRate());
+            g.drawString(String.format("Tick rate: %.1f / %s Hz, skipped: %d%s", tickRate.achievedRate(), target,
+                    tickRate.skippedTicks(), tickRate.saturated() ? " (saturated)" : ""), 10, 55);
+        }
+        if (metricsOverlay) {
+            drawMetrics(g, 70);
+        }
+        if (frameReceivedNanos >= 0) {
+            Metrics.RENDER_LATENCY.record(System.nanoTime() - frameReceivedNanos);
+            frameReceivedNanos = -1;
+        }
+        event.commit(tickId, boids.size());
+    }
+
+    private void drawMetrics(Graphics g, int top) {
+        drawLatency(g, "Tick", Metrics.TICK_LATENCY, top);
+        drawLatency(g, "Snapshot", Metrics.SNAPSHOT_BUILD, top + 15);
+        drawLatency(g, "Velocity", Metrics.VELOCITY_PHASE, top + 30);
+        drawLatency(g, "Position", Metrics.POSITION_PHASE, top + 45);
+        drawLatency(g, "Render", Metrics.RENDER_LATENCY, top + 60);
+        g.drawString(String.format("Messages/tick: p50 %d, mailbox depth: p99 %d, max %d",
+                Metrics.MESSAGES_PER_TICK.percentile(0.5), Metrics.MAILBOX_DEPTH.percentile(0.99),
+                Metrics.MAILBOX_DEPTH.max()), 10, top + 75);
+    }
+
+    private static void drawLatency(Graphics g, String name, Histogram histogram, int y) {
+        g.drawString(String.format("%s: p50 %.2f ms, p99 %.2f ms", name,
+                histogram.percentile(0.5) / 1e6, histogram.percentile(0.99) / 1e6), 10, y);
+    }
+
+    private void drawDots(int imageWidth, int imageHeight) {
+        var w = view.getWidth();
+        var h = view.getHeight();
+        var xScale = w / this.width;
+        for (int i = 0; i < boids.size(); i++) {
+            int px = (int) (w/2 + boids.x(i) * xScale);
+            int py = (int) (h/2 - boids.y(i) * xScale);
+            if (px < 0 || py < 0 || px + DOT_SIZE > imageWidth || py + DOT_SIZE > imageHeight) {
+                drawClippedDot(px, py, imageWidth, imageHeight);
+                continue;
+            }
+            int row = py * imageWidth + px;
+            for (int dy = 0, d = 0; dy < DOT_SIZE; dy++, row += imageWidth) {
+                for (int dx = 0; dx < DOT_SIZE; dx++, d++) {
+                    if (DOT[d]) pixels[row + dx] = BOID_COLOR;
+                }
+            }
+        }
+    }
+
+    private void drawClippedDot(int px, int py, int imageWidth, int imageHeight) {
+        for (int dy = 0, d = 0; dy < DOT_SIZE; dy++) {
+            for (int dx = 0; dx < DOT_SIZE; dx++, d++) {
+                int x = px + dx, y = py + dy;
+                if (DOT[d] && x >= 0 && y >= 0 && x < imageWidth && y < imageHeight) {
+                    pixels[y * imageWidth + x] = BOID_COLOR;
+                }
+            }
+        }
+    }
+
+    /*
+     * Heatmap for very large flocks: boids are counted in DENSITY_CELL-sized
+     * squares and each square is shaded on a log scale of its count.
+     */
+    private void drawDensity(int imageWidth, int imageHeight) {
+        var w = view.getWidth();
+        var h = view.getHeight();
+        var xScale = w / this.width;
+        int cols = (imageWidth + DENSITY_CELL - 1) / DENSITY_CELL;
+        int rows = (imageHeight + DENSITY_CELL - 1) / DENSITY_CELL;
+        if (density.length < cols * rows) {
+            density = new int[cols * rows];
+        } else {
+            Arrays.fill(density, 0, cols * rows, 0);
+        }
+
+        int max = 0;
+        for (int i = 0; i < boids.size(); i++) {
+            int px = (int) (w/2 + boids.x(i) * xScale) + DOT_SIZE/2;
+            int py = (int) (h/2 - boids.y(i) * xScale) + DOT_SIZE/2;
+            if (px < 0 || py < 0 || px >= imageWidth || py >= imageHeight) continue;
+            int cell = (py / DENSITY_CELL) * cols + px / DENSITY_CELL;
+            max = Math.max(max, ++density[cell]);
+        }
+        if (max == 0) return;
+
+        double logMax = Math.log1p(max);
+        for (int cy = 0; cy < rows; cy++) {
+            for (int cx = 0; cx < cols; cx++) {
+                int count = density[cy * cols + cx];
+                if (count == 0) continue;
+                int color = heatColor(Math.log1p(count) / logMax);
+                int yEnd = Math.min(imageHeight, (cy + 1) * DENSITY_CELL);
+                int xStart = cx * DENSITY_CELL;
+                int xEnd = Math.min(imageWidth, xStart + DENSITY_CELL);
+                for (int y = cy * DENSITY_CELL; y < yEnd; y++) {
+                    Arrays.fill(pixels, y * imageWidth + xStart, y * imageWidth + xEnd, color);
+                }
+            }
+        }
+    }
+
+    /* light blue for sparse areas through blue to red for the densest ones */
+    private static int heatColor(double t) {
+        int r, g, b;
+        if (t < 0.5) {
+            double k = t * 2;
+            r = (int) (170 * (1 - k));
+            g = (int) (200 * (1 - k));
+            b = 255;
+        } else {
+            double k = (t - 0.5) * 2;
+            r = (int) (255 * k);
+            g = 0;
+            b = (int) (255 * (1 - k));
+        }
+        return (r << 16) | (g << 8) | b;
+    }
 }
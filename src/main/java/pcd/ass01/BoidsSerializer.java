@@ -0,0 +1,249 @@
+package pcd.ass01;
+
+import akka.actor.ActorRef;
+import akka.actor.ExtendedActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializerWithStringManifest;
+import pcd.ass01.SimulationMessages.*;
+
+import java.io.NotSerializableException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Compact binary format for the messages that cross JVMs: boids are
+ * sent as packed arrays of doubles (ids as ints) instead of Java
+ * serialization of objects. Doubles rather than floats, so that a
+ * distributed run stays bit-identical to a local one.
+ * Bound to the messages in cluster.conf.
+ *
+ */
+public class BoidsSerializer extends SerializerWithStringManifest {
+
+    private static final String SNAPSHOT = "S", BOID_UPDATE = "U", RENDER_FRAME = "F",
+            CREATE_REGION = "C", REGION_CREATED = "c", REGION_REFS = "R", REGION_STEP = "T",
+            HALO = "H", HANDOVER = "O", REGION_STEPPED = "D";
+
+    private final ExtendedActorSystem system;
+
+    public BoidsSerializer(ExtendedActorSystem system) {
+        this.system = system;
+    }
+
+    @Override
+    public int identifier() {
+        return 740_201;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        if (o instanceof Snapshot) return SNAPSHOT;
+        if (o instanceof BoidUpdate) return BOID_UPDATE;
+        if (o instanceof RenderFrame) return RENDER_FRAME;
+        if (o instanceof CreateRegion) return CREATE_REGION;
+        if (o instanceof RegionCreated) return REGION_CREATED;
+        if (o instanceof RegionRefs) return REGION_REFS;
+        if (o instanceof RegionStep) return REGION_STEP;
+        if (o instanceof Halo) return HALO;
+        if (o instanceof Handover) return HANDOVER;
+        if (o instanceof RegionStepped) return REGION_STEPPED;
+        throw new IllegalArgumentException("Cannot serialize " + o.getClass());
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        ByteBuffer buf;
+        if (o instanceof Snapshot msg) {
+            SpatialGrid grid = msg.grid();
+            int cells = grid.cellStarts().length;
+            buf = ByteBuffer.allocate(8 * 11 + 4 * 3 + 4 * cells + boidsSize(grid.boids()) + 4 * grid.ids().length);
+            buf.putLong(msg.tickId())
+                    .putDouble(msg.sepW()).putDouble(msg.aliW()).putDouble(msg.cohW())
+                    .putDouble(msg.perceptionRadius()).putDouble(msg.avoidRadius()).putDouble(msg.maxSpeed())
+                    .putDouble(grid.minX()).putDouble(grid.minY()).putDouble(grid.cellWidth()).putDouble(grid.cellHeight())
+                    .putInt(grid.cols()).putInt(grid.rows()).putInt(cells);
+            buf.asIntBuffer().put(grid.cellStarts());
+            buf.position(buf.position() + 4 * cells);
+            putBoids(buf, grid.boids());
+            buf.asIntBuffer().put(grid.ids());
+            buf.position(buf.position() + 4 * grid.ids().length);
+        } else if (o instanceof BoidUpdate msg) {
+            buf = ByteBuffer.allocate(8 + 4 + 8 * 4);
+            buf.putLong(msg.tickId()).putInt(msg.id())
+                    .putDouble(msg.x()).putDouble(msg.y()).putDouble(msg.vx()).putDouble(msg.vy());
+        } else if (o instanceof RenderFrame msg) {
+            buf = ByteBuffer.allocate(8 + boidsSize(msg.boids()));
+            buf.putLong(msg.tickId());
+            putBoids(buf, msg.boids());
+        } else if (o instanceof CreateRegion msg) {
+            WorldParams p = msg.params();
+            buf = ByteBuffer.allocate(4 + 4 + 8 * 5 + setSize(msg.boids()));
+            buf.putInt(msg.region()).putInt(msg.nRegions())
+                    .putDouble(p.width()).putDouble(p.height()).putDouble(p.perceptionRadius())
+                    .putDouble(p.avoidRadius()).putDouble(p.maxSpeed());
+            putSet(buf, msg.boids());
+        } else if (o instanceof RegionCreated msg) {
+            byte[] ref = refBytes(msg.ref());
+            buf = ByteBuffer.allocate(4 + 4 + ref.length);
+            buf.putInt(msg.region()).putInt(ref.length).put(ref);
+        } else if (o instanceof RegionRefs msg) {
+            List<byte[]> refs = new ArrayList<>();
+            int size = 4;
+            for (ActorRef ref : msg.regions()) {
+                byte[] bytes = refBytes(ref);
+                refs.add(bytes);
+                size += 4 + bytes.length;
+            }
+            buf = ByteBuffer.allocate(size);
+            buf.putInt(refs.size());
+            for (byte[] bytes : refs) {
+                buf.putInt(bytes.length).put(bytes);
+            }
+        } else if (o instanceof RegionStep msg) {
+            buf = ByteBuffer.allocate(8 * 4);
+            buf.putLong(msg.tickId()).putDouble(msg.sepW()).putDouble(msg.aliW()).putDouble(msg.cohW());
+        } else if (o instanceof Halo msg) {
+            buf = ByteBuffer.allocate(8 + 4 + setSize(msg.boids()));
+            buf.putLong(msg.tickId()).putInt(msg.from());
+            putSet(buf, msg.boids());
+        } else if (o instanceof Handover msg) {
+            buf = ByteBuffer.allocate(8 + 4 + setSize(msg.boids()));
+            buf.putLong(msg.tickId()).putInt(msg.from());
+            putSet(buf, msg.boids());
+        } else if (o instanceof RegionStepped msg) {
+            buf = ByteBuffer.allocate(8 + 4 + 8 + setSize(msg.boids()));
+            buf.putLong(msg.tickId()).putInt(msg.region()).putLong(msg.wireBytes());
+            putSet(buf, msg.boids());
+        } else {
+            throw new IllegalArgumentException("Cannot serialize " + o.getClass());
+        }
+        WireMetrics.serialized(buf.capacity());
+        return buf.array();
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        switch (manifest) {
+            case SNAPSHOT: {
+                long tickId = buf.getLong();
+                double sepW = buf.getDouble(), aliW = buf.getDouble(), cohW = buf.getDouble();
+                double perception = buf.getDouble(), avoid = buf.getDouble(), maxSpeed = buf.getDouble();
+                double minX = buf.getDouble(), minY = buf.getDouble();
+                double cellWidth = buf.getDouble(), cellHeight = buf.getDouble();
+                int cols = buf.getInt(), rows = buf.getInt();
+                int[] cellStart = getInts(buf, buf.getInt());
+                BoidsView boids = getBoids(buf);
+                int[] ids = getInts(buf, boids.size());
+                SpatialGrid grid = SpatialGrid.restore(minX, minY, cellWidth, cellHeight, cols, rows, cellStart, ids, boids);
+                return new Snapshot(tickId, grid, sepW, aliW, cohW, perception, avoid, maxSpeed);
+            }
+            case BOID_UPDATE:
+                return new BoidUpdate(buf.getLong(), buf.getInt(),
+                        buf.getDouble(), buf.getDouble(), buf.getDouble(), buf.getDouble());
+            case RENDER_FRAME:
+                return new RenderFrame(buf.getLong(), getBoids(buf));
+            case CREATE_REGION: {
+                int region = buf.getInt(), nRegions = buf.getInt();
+                WorldParams params = new WorldParams(buf.getDouble(), buf.getDouble(), buf.getDouble(),
+                        buf.getDouble(), buf.getDouble());
+                return new CreateRegion(region, nRegions, params, getSet(buf));
+            }
+            case REGION_CREATED:
+                return new RegionCreated(buf.getInt(), getRef(buf));
+            case REGION_REFS: {
+                int n = buf.getInt();
+                List<ActorRef> regions = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    regions.add(getRef(buf));
+                }
+                return new RegionRefs(List.copyOf(regions));
+            }
+            case REGION_STEP:
+                return new RegionStep(buf.getLong(), buf.getDouble(), buf.getDouble(), buf.getDouble());
+            case HALO:
+                return new Halo(buf.getLong(), buf.getInt(), getSet(buf));
+            case HANDOVER:
+                return new Handover(buf.getLong(), buf.getInt(), getSet(buf));
+            case REGION_STEPPED: {
+                long tickId = buf.getLong();
+                int region = buf.getInt();
+                long wireBytes = buf.getLong();
+                return new RegionStepped(tickId, region, getSet(buf), wireBytes);
+            }
+            default:
+                throw new NotSerializableException("Unknown manifest: " + manifest);
+        }
+    }
+
+    /* the ByteBuffer getters are evaluated left to right, as the fields were put */
+
+    private static int boidsSize(BoidsView boids) {
+        return 4 + 8 * 4 * boids.size();
+    }
+
+    private static void putBoids(ByteBuffer buf, BoidsView boids) {
+        buf.putInt(boids.size());
+        for (int i = 0; i < boids.size(); i++) {
+            buf.putDouble(boids.x(i)).putDouble(boids.y(i)).putDouble(boids.vx(i)).putDouble(boids.vy(i));
+        }
+    }
+
+    private static BoidsView getBoids(ByteBuffer buf) {
+        int n = buf.getInt();
+        double[] x = new double[n], y = new double[n], vx = new double[n], vy = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = buf.getDouble();
+            y[i] = buf.getDouble();
+            vx[i] = buf.getDouble();
+            vy[i] = buf.getDouble();
+        }
+        return new BoidsView(x, y, vx, vy);
+    }
+
+    private static int setSize(BoidSet boids) {
+        return 4 + (4 + 8 * 4) * boids.size();
+    }
+
+    private static void putSet(ByteBuffer buf, BoidSet boids) {
+        int n = boids.size();
+        buf.putInt(n);
+        buf.asIntBuffer().put(boids.ids());
+        buf.position(buf.position() + 4 * n);
+        for (double[] values : new double[][] {boids.x(), boids.y(), boids.vx(), boids.vy()}) {
+            buf.asDoubleBuffer().put(values);
+            buf.position(buf.position() + 8 * n);
+        }
+    }
+
+    private static BoidSet getSet(ByteBuffer buf) {
+        int n = buf.getInt();
+        int[] ids = getInts(buf, n);
+        double[][] values = new double[4][n];
+        for (double[] v : values) {
+            buf.asDoubleBuffer().get(v);
+            buf.position(buf.position() + 8 * n);
+        }
+        return new BoidSet(ids, values[0], values[1], values[2], values[3]);
+    }
+
+    private static int[] getInts(ByteBuffer buf, int n) {
+        int[] values = new int[n];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * n);
+        return values;
+    }
+
+    private static byte[] refBytes(ActorRef ref) {
+        return Serialization.serializedActorPath(ref).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private ActorRef getRef(ByteBuffer buf) {
+        byte[] bytes = new byte[buf.getInt()];
+        buf.get(bytes);
+        return system.provider().resolveActorRef(new String(bytes, StandardCharsets.UTF_8));
+    }
+}
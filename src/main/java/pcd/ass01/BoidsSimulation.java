@@ -5,6 +5,9 @@ import akka.actor.ActorSystem;
 import akka.actor.Props;
 import pcd.ass01.SimulationMessages.*;
 
+import java.nio.file.Path;
+import java.util.Arrays;
+
 public class BoidsSimulation {
 
 	final static double SEPARATION_WEIGHT = 1.0;
@@ -16,12 +19,32 @@ public class BoidsSimulation {
     static final double PERCEPTION_RADIUS = 50.0;
     static final double AVOID_RADIUS = 20.0;
 
+    static final int BOID_WORKERS = Runtime.getRuntime().availableProcessors();
+
 	final static int SCREEN_WIDTH = 800; 
 	final static int SCREEN_HEIGHT = 800; 
 	
 
+    /**
+     * Options: --engine=E, --tick-ms=T; --record=FILE [--record-ticks=N] to record
+     * the frames to a trajectory file; --replay=FILE [--replay-speed=S] to show a
+     * recorded file instead of running the simulation.
+     */
     public static void main(String[] args) {
+		EngineType engine = EngineType.parse(arg(args, "engine", "actors"));
+		Metrics.registerMBean();
 		ActorSystem system = ActorSystem.create("MySystem");
+		long tickMs = Long.parseLong(arg(args, "tick-ms", String.valueOf(GuardianActor.TICK_MS)));
+
+		String replay = arg(args, "replay", null);
+		if (replay != null) {
+			double speed = Double.parseDouble(arg(args, "replay-speed", "1"));
+			ActorRef replayer = system.actorOf(Props.create(ReplayActor.class, Path.of(replay), Math.max(1, tickMs), speed));
+			ActorRef view = system.actorOf(Props.create(ViewActor.class, replayer, SCREEN_WIDTH, SCREEN_HEIGHT, ENVIRONMENT_HEIGHT));
+			replayer.tell(new ViewActorAttachment(view), ActorRef.noSender());
+			return;
+		}
+
 		ActorRef world = system.actorOf(Props.create(WorldActor.class,
 				ALIGNMENT_WEIGHT,
 				COHESION_WEIGHT,
@@ -30,12 +53,26 @@ public class BoidsSimulation {
 				AVOID_RADIUS,
 				ENVIRONMENT_HEIGHT,
 				ENVIRONMENT_WIDTH,
-				SEPARATION_WEIGHT));
+				SEPARATION_WEIGHT,
+				BOID_WORKERS,
+				engine));
 
-		ActorRef guardian = system.actorOf(Props.create(GuardianActor.class, world));
+		ActorRef guardian = system.actorOf(Props.create(GuardianActor.class, world, tickMs));
 		ActorRef view = system.actorOf(Props.create(ViewActor.class, guardian, SCREEN_WIDTH, SCREEN_HEIGHT, ENVIRONMENT_HEIGHT));
 
-		guardian.tell(new ViewActorAttachment(view), ActorRef.noSender());
+		String record = arg(args, "record", null);
+		ActorRef renderer = record == null ? view : system.actorOf(Props.create(RecorderActor.class,
+				view, Path.of(record), Integer.parseInt(arg(args, "record-ticks", "10000"))));
+		guardian.tell(new ViewActorAttachment(renderer), ActorRef.noSender());
 		world.tell(new GuardianActorAttachment(guardian), ActorRef.noSender());
     }
-}
+
+    static String arg(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        return Arrays.stream(args)
+                .filter(a -> a.startsWith(prefix))
+                .map(a -> a.substring(prefix.length()))
+                .findFirst()
+                .orElse(defaultValue);
+    }
+}
\ No newline at end of file
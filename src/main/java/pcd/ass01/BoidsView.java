@@ -0,0 +1,53 @@
+package pcd.ass01;
+
+/**
+ *
+ * Read-only state of the flock at a given tick, indexed by boid id.
+ * Instances are never modified after creation, so they can be shared
+ * between actors and the Swing thread without copies.
+ * The frames of an OffHeapBoidStore are the only subclass: they read the
+ * memory of the store in place, which is written again once they are
+ * released, so they must not be read afterwards. The consumer that ends
+ * the life of a frame, e.g. by dropping it or by painting the next one,
+ * releases it; for the other views release does nothing.
+ *
+ */
+public sealed class BoidsView permits OffHeapBoidStore.View {
+
+    private final double[] x, y, vx, vy;
+
+    BoidsView(double[] x, double[] y, double[] vx, double[] vy) {
+        this.x = x;
+        this.y = y;
+        this.vx = vx;
+        this.vy = vy;
+    }
+
+    /* for the subclass, which brings its own storage */
+    BoidsView() {
+        this(null, null, null, null);
+    }
+
+    public int size() {
+        return x.length;
+    }
+
+    public double x(int id) {
+        return x[id];
+    }
+
+    public double y(int id) {
+        return y[id];
+    }
+
+    public double vx(int id) {
+        return vx[id];
+    }
+
+    public double vy(int id) {
+        return vy[id];
+    }
+
+    /** The caller is done with the view, which may be recycled; at most once per holder. */
+    public void release() {}
+}
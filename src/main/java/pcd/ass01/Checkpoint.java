@@ -0,0 +1,86 @@
+package pcd.ass01;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * State of a simulation between two steps: the flock, the weights, the tick
+ * reached and the seed and layout the flock was generated from. Enough to
+ * go on with the simulation exactly as if it had never been interrupted,
+ * since the steps are deterministic.
+ * On file, a fixed header is followed by the x, y, vx and vy arrays of the
+ * boids as little-endian doubles; files are mapped, so reading one is
+ * little more than copying it into the arrays of the flock.
+ *
+ */
+public record Checkpoint(long tickId, long seed, FlockGenerator.Layout layout,
+                         double sepW, double aliW, double cohW, BoidsView boids) {
+
+    private static final int MAGIC = 0x424f4350; // "BOCP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+
+    public void write(Path path) throws IOException {
+        int n = boids.size();
+        if (HEADER_BYTES + 32L * n > Integer.MAX_VALUE) {
+            throw new IOException("Too many boids for a checkpoint: " + n);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + 32L * n);
+            buffer.order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(VERSION).putInt(n).putInt(layout.ordinal())
+                    .putLong(tickId).putLong(seed)
+                    .putDouble(sepW).putDouble(aliW).putDouble(cohW);
+            DoubleBuffer doubles = buffer.position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            for (int i = 0; i < n; i++) {
+                doubles.put(i, boids.x(i));
+                doubles.put(n + i, boids.y(i));
+                doubles.put(2 * n + i, boids.vx(i));
+                doubles.put(3 * n + i, boids.vy(i));
+            }
+            buffer.force();
+        }
+    }
+
+    /** Reads a checkpoint, failing with an IOException on any file that is not a valid one. */
+    public static Checkpoint read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a checkpoint: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a checkpoint: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ": " + path);
+            }
+            int n = buffer.getInt();
+            int ordinal = buffer.getInt();
+            FlockGenerator.Layout[] layouts = FlockGenerator.Layout.values();
+            if (ordinal < 0 || ordinal >= layouts.length) {
+                throw new IOException("Unknown layout " + ordinal + " in checkpoint: " + path);
+            }
+            long tickId = buffer.getLong();
+            long seed = buffer.getLong();
+            double sepW = buffer.getDouble(), aliW = buffer.getDouble(), cohW = buffer.getDouble();
+            if (n < 0 || size != HEADER_BYTES + 32L * n) {
+                throw new IOException("Truncated checkpoint: " + path);
+            }
+            DoubleBuffer doubles = buffer.position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            double[] x = new double[n], y = new double[n], vx = new double[n], vy = new double[n];
+            doubles.get(0, x).get(n, y).get(2 * n, vx).get(3 * n, vy);
+            return new Checkpoint(tickId, seed, layouts[ordinal], sepW, aliW, cohW, new BoidsView(x, y, vx, vy));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package pcd.ass01;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.cluster.Cluster;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import static pcd.ass01.BoidsSimulation.*;
+
+/**
+ *
+ * Node of a headless simulation spread over several JVMs with Akka Cluster.
+ * Worker nodes host the region actors; the world node, also the seed node
+ * by default, waits for the given number of workers, then runs the
+ * benchmark of BoidsBenchmark with the cluster engine and leaves, which
+ * shuts the workers down too. On a single machine, e.g.:
+ *
+ *   ClusterNode --role=worker &
+ *   ClusterNode --role=worker &
+ *   ClusterNode --role=world --min-workers=2 --boids=20000 --workers=8
+ *
+ * Usage: ClusterNode --role=world|worker [--port=P] [--seed-node=HOST:PORT] [--min-workers=M]
+ *                    [--boids=N] [--ticks=T] [--warmup=W] [--seed=S] [--workers=K] [--layout=UNIFORM|CLUSTERED]
+ *
+ * where --workers is the number of regions.
+ *
+ */
+public class ClusterNode {
+
+    static final String WORLD_ROLE = "world";
+    static final String WORKER_ROLE = "worker";
+    private static final String SYSTEM_NAME = "BoidsCluster";
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Metrics.registerMBean();
+
+        String role = arg(args, "role", WORKER_ROLE);
+        String seedNode = arg(args, "seed-node", "127.0.0.1:2551");
+        String port = arg(args, "port", role.equals(WORLD_ROLE) ? seedNode.substring(seedNode.indexOf(':') + 1) : "0");
+        int minWorkers = Integer.parseInt(arg(args, "min-workers", "1"));
+        int ticks = Integer.parseInt(arg(args, "ticks", "200"));
+        int warmup = Integer.parseInt(arg(args, "warmup", "20"));
+        BoidsBenchmark.checkArgs(ticks, warmup);
+
+        Config config = ConfigFactory.parseString(
+                "akka.remote.artery.canonical.port = " + port + "\n" +
+                "akka.cluster.roles = [" + role + "]\n" +
+                "akka.cluster.seed-nodes = [\"akka://" + SYSTEM_NAME + "@" + seedNode + "\"]\n" +
+                "akka.cluster.role." + WORKER_ROLE + ".min-nr-of-members = " + minWorkers)
+                .withFallback(ConfigFactory.load("cluster"));
+        ActorSystem system = ActorSystem.create(SYSTEM_NAME, config);
+
+        switch (role) {
+            case WORKER_ROLE:
+                system.actorOf(Props.create(RegionHostActor.class), RegionHostActor.NAME);
+                break;
+            case WORLD_ROLE:
+                int nBoids = Integer.parseInt(arg(args, "boids", "10000"));
+                long seed = Long.parseLong(arg(args, "seed", "42"));
+                int regions = Integer.parseInt(arg(args, "workers", String.valueOf(Math.max(4, minWorkers))));
+                FlockGenerator.Layout layout = FlockGenerator.Layout.valueOf(arg(args, "layout", "UNIFORM"));
+                System.out.println("[ClusterNode] Waiting for " + minWorkers + " worker nodes");
+                Cluster.get(system).registerOnMemberUp(() ->
+                        BoidsBenchmark.run(system, nBoids, ticks, warmup, seed, regions, layout, EngineType.CLUSTER));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown role: " + role);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package pcd.ass01;
+
+import akka.actor.ActorRefFactory;
+
+/**
+ *
+ * Engines available behind WorldActor, chosen at startup.
+ *
+ */
+public enum EngineType {
+
+    /** Boid actors (or worker actors, one per slice) driven by messages. */
+    ACTORS {
+        @Override
+        public SimulationEngine create(ActorRefFactory context, WorldParams params, int nWorkers) {
+            return new ActorEngine(context, params, nWorkers);
+        }
+    },
+
+    /** Region actors owning spatial tiles, exchanging halos with their neighbours. */
+    REGIONS {
+        @Override
+        public SimulationEngine create(ActorRefFactory context, WorldParams params, int nWorkers) {
+            return new RegionEngine(context, params, nWorkers, false);
+        }
+    },
+
+    /** Region actors spread over the worker nodes of a cluster, see ClusterNode. */
+    CLUSTER {
+        @Override
+        public SimulationEngine create(ActorRefFactory context, WorldParams params, int nWorkers) {
+            return new RegionEngine(context, params, nWorkers, true);
+        }
+    },
+
+    /** Data-parallel passes over the boid arrays on a ForkJoinPool. */
+    FORK_JOIN {
+        @Override
+        public SimulationEngine create(ActorRefFactory context, WorldParams params, int nWorkers) {
+            return new ForkJoinEngine(params, nWorkers);
+        }
+    },
+
+    /** As FORK_JOIN, with the boids and the grid in off-heap memory. */
+    OFF_HEAP {
+        @Override
+        public SimulationEngine create(ActorRefFactory context, WorldParams params, int nWorkers) {
+            return new OffHeapEngine(params, nWorkers);
+        }
+    },
+
+    /** Fixed pool of platform threads, each one owning a slice of the flock. */
+    PLATFORM_THREADS {
+        @Override
+        public SimulationEngine create(ActorRefFactory context, WorldParams params, int nWorkers) {
+            return new PlatformThreadEngine(params, nWorkers);
+        }
+    },
+
+    /**
+     * Groups of boids on virtual threads, synchronised by monitors.
+     * The engine is compiled only by the java21 profile, so it is looked up
+     * reflectively and the default build does not depend on it.
+     */
+    VIRTUAL_THREADS {
+        @Override
+        public SimulationEngine create(ActorRefFactory context, WorldParams params, int nWorkers) {
+            try {
+                return (SimulationEngine) Class.forName("pcd.ass01.VirtualThreadEngine")
+                        .getConstructor(WorldParams.class, int.class)
+                        .newInstance(params, nWorkers);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("The virtual-threads engine needs a build with the java21 profile", e);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create the virtual-threads engine", e);
+            }
+        }
+    };
+
+    /**
+     * @param context  factory for the actors of the engine, if any
+     * @param nWorkers degree of parallelism; see each engine for its meaning
+     */
+    public abstract SimulationEngine create(ActorRefFactory context, WorldParams params, int nWorkers);
+
+    /** Parses names like "actors" or "fork-join". */
+    public static EngineType parse(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,180 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+/**
+ *
+ * Kernel that takes alignment and cohesion from per-cell sums instead of
+ * visiting every neighbour. Each tick the flock is bucketed again on a grid
+ * finer than the perception radius, keeping for each cell the count and the
+ * sums of positions and velocities of its boids. Cells wholly inside the
+ * perception disk of a boid contribute their sums, cells partially covered
+ * are scanned boid by boid, and cells within the avoid radius are scanned
+ * for separation, which stays exact.
+ * With exact borders results are those of the scalar kernel up to the order
+ * of the sums; with centre borders a partially covered cell is instead taken
+ * whole when its centre lies in the disk and dropped otherwise, trading
+ * accuracy for fewer scans (see FlockingKernelTest for the error, or
+ * BoidsBenchmark --verify).
+ * Chosen with -Dpcd.boids.neighbours=farfield, with the cells per perception
+ * radius in -Dpcd.boids.farfield.cells and -Dpcd.boids.farfield.borders=exact|centre.
+ *
+ */
+public final class FarFieldKernel implements FlockingKernel {
+
+    private final WorldParams params;
+    private final int cellsPerRadius;
+    private final boolean centreBorders;
+
+    /* written by prepare, before the step; read by the threads of the step */
+    private SpatialGrid fine;
+    private double[] sumX, sumY, sumVx, sumVy;
+
+    public FarFieldKernel(WorldParams params, int cellsPerRadius, boolean centreBorders) {
+        if (cellsPerRadius < 1) throw new IllegalArgumentException("Cells per radius must be positive: " + cellsPerRadius);
+        this.params = params;
+        this.cellsPerRadius = cellsPerRadius;
+        this.centreBorders = centreBorders;
+    }
+
+    static int configuredCells() {
+        return Integer.parseInt(System.getProperty("pcd.boids.farfield.cells", "4"));
+    }
+
+    static boolean configuredCentreBorders() {
+        String borders = System.getProperty("pcd.boids.farfield.borders", "exact").trim().toLowerCase();
+        switch (borders) {
+            case "exact":
+                return false;
+            case "centre":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown far-field borders: " + borders);
+        }
+    }
+
+    /** Whether results may differ from the scalar kernel by more than rounding. */
+    boolean approximate() {
+        return centreBorders;
+    }
+
+    @Override
+    public void prepare(Snapshot snap) {
+        BoidsView boids = snap.grid().boids();
+        fine = SpatialGrid.build(boids, -params.width()/2, -params.height()/2, params.width(), params.height(),
+                params.perceptionRadius() / cellsPerRadius);
+        int cells = fine.cols() * fine.rows();
+        if (sumX == null || sumX.length != cells) {
+            sumX = new double[cells];
+            sumY = new double[cells];
+            sumVx = new double[cells];
+            sumVy = new double[cells];
+        }
+        int[] cellStart = fine.cellStarts();
+        for (int c = 0; c < cells; c++) {
+            double sx = 0, sy = 0, svx = 0, svy = 0;
+            for (int pos = cellStart[c]; pos < cellStart[c + 1]; pos++) {
+                sx += fine.x(pos);
+                sy += fine.y(pos);
+                svx += fine.vx(pos);
+                svy += fine.vy(pos);
+            }
+            sumX[c] = sx;
+            sumY[c] = sy;
+            sumVx[c] = svx;
+            sumVy[c] = svy;
+        }
+    }
+
+    @Override
+    public void steer(Snapshot snap, int id, double x, double y, double vx, double vy, double[] out) {
+        SpatialGrid grid = fine;
+        int[] cellStart = grid.cellStarts();
+        double perceptionRadius = snap.perceptionRadius();
+        double avoidRadius = snap.avoidRadius();
+        double r2 = perceptionRadius * perceptionRadius;
+        double a2 = avoidRadius * avoidRadius;
+        double cellWidth = grid.cellWidth(), cellHeight = grid.cellHeight();
+        int reachX = (int) Math.ceil(perceptionRadius / cellWidth);
+        int reachY = (int) Math.ceil(perceptionRadius / cellHeight);
+
+        int nearby = 0, avoided = 0;
+        double sumVx = 0, sumVy = 0, sumX = 0, sumY = 0, sepDx = 0, sepDy = 0;
+        int cx = grid.cellX(x);
+        int cy = grid.cellY(y);
+        int minCx = Math.max(0, cx - reachX);
+        int maxCx = Math.min(grid.cols() - 1, cx + reachX);
+        int maxCy = Math.min(grid.rows() - 1, cy + reachY);
+        for (int gy = Math.max(0, cy - reachY); gy <= maxCy; gy++) {
+            double y0 = grid.minY() + gy * cellHeight;
+            double nearY = Math.max(0, Math.max(y0 - y, y - (y0 + cellHeight)));
+            double farY = Math.max(Math.abs(y - y0), Math.abs(y - (y0 + cellHeight)));
+            for (int gx = minCx; gx <= maxCx; gx++) {
+                double x0 = grid.minX() + gx * cellWidth;
+                double nearX = Math.max(0, Math.max(x0 - x, x - (x0 + cellWidth)));
+                double near2 = nearX*nearX + nearY*nearY;
+                if (near2 >= r2) continue;
+                int cell = gx + grid.cols() * gy;
+                int start = cellStart[cell], end = cellStart[cell + 1];
+                if (start == end) continue;
+                double farX = Math.max(Math.abs(x - x0), Math.abs(x - (x0 + cellWidth)));
+                boolean whole = farX*farX + farY*farY < r2;
+                if (!whole && centreBorders) {
+                    double dx = x0 + cellWidth / 2 - x, dy = y0 + cellHeight / 2 - y;
+                    if (dx*dx + dy*dy >= r2) {
+                        /* dropped: only separation is left, exact */
+                        if (near2 >= a2) continue;
+                        for (int i = start; i < end; i++) {
+                            if (grid.id(i) == id) continue;
+                            double ex = grid.x(i) - x, ey = grid.y(i) - y;
+                            if (Math.sqrt(ex*ex + ey*ey) < avoidRadius) {
+                                sepDx -= ex;
+                                sepDy -= ey;
+                                avoided++;
+                            }
+                        }
+                        continue;
+                    }
+                    whole = true;
+                }
+                if (whole) {
+                    nearby += end - start;
+                    sumVx += this.sumVx[cell];
+                    sumVy += this.sumVy[cell];
+                    sumX += this.sumX[cell];
+                    sumY += this.sumY[cell];
+                    if (gx == cx && gy == cy) {
+                        /* the boid itself is in the sums of its cell */
+                        nearby--;
+                        sumVx -= vx;
+                        sumVy -= vy;
+                        sumX -= x;
+                        sumY -= y;
+                    }
+                    if (near2 >= a2) continue;
+                }
+                for (int i = start; i < end; i++) {
+                    if (grid.id(i) == id) continue;
+                    double ox = grid.x(i);
+                    double oy = grid.y(i);
+                    double dx = ox - x;
+                    double dy = oy - y;
+                    double distance = Math.sqrt(dx*dx + dy*dy);
+                    if (!whole && distance < perceptionRadius) {
+                        nearby++;
+                        sumVx += grid.vx(i);
+                        sumVy += grid.vy(i);
+                        sumX += ox;
+                        sumY += oy;
+                    }
+                    if (distance < avoidRadius) {
+                        sepDx += x - ox;
+                        sepDy += y - oy;
+                        avoided++;
+                    }
+                }
+            }
+        }
+        BoidRules.applyRules(snap, x, y, vx, vy, nearby, avoided, sumVx, sumVy, sumX, sumY, sepDx, sepDy, out);
+    }
+}
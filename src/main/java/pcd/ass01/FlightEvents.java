@@ -0,0 +1,90 @@
+package pcd.ass01;
+
+import jdk.jfr.*;
+
+/**
+ *
+ * Java Flight Recorder events of the tick pipeline, in the "Boids" category,
+ * so that the tick timeline can be lined up with the flame graph in Mission
+ * Control. They are recorded only while a recording is running, e.g. started
+ * with -XX:StartFlightRecording or at runtime with jcmd <pid> JFR.start, and
+ * can be switched off one by one through the recording settings.
+ * Events are created once per tick or phase, never per boid: with no
+ * recording, begin and commit do nothing and the fields are never set.
+ *
+ */
+public final class FlightEvents {
+
+    private FlightEvents() {}
+
+    /** Event spanning a step of the given tick over the given number of boids. */
+    @Category("Boids")
+    @StackTrace(false)
+    abstract static class TickSpan extends Event {
+
+        @Label("Tick")
+        long tickId;
+
+        @Label("Boids")
+        int boids;
+
+        /** Ends the event and commits it, if it is being recorded. */
+        void commit(long tickId, int boids) {
+            end();
+            if (shouldCommit()) {
+                this.tickId = tickId;
+                this.boids = boids;
+                commit();
+            }
+        }
+    }
+
+    @Name("pcd.ass01.Tick")
+    @Label("Tick")
+    @Description("From the tick sent by GuardianActor to its frame coming back")
+    public static final class Tick extends TickSpan {}
+
+    @Name("pcd.ass01.SnapshotBuild")
+    @Label("Snapshot Build")
+    @Description("Bucketing of the boids in the spatial grid of a snapshot")
+    public static final class SnapshotBuild extends TickSpan {}
+
+    @Name("pcd.ass01.VelocityPhase")
+    @Label("Velocity Phase")
+    @Description("Steering of the boids of an engine, worker or region")
+    public static final class VelocityPhase extends TickSpan {}
+
+    @Name("pcd.ass01.PositionPhase")
+    @Label("Position Phase")
+    @Description("Movement of the boids of an engine, worker or region")
+    public static final class PositionPhase extends TickSpan {}
+
+    @Name("pcd.ass01.FramePaint")
+    @Label("Frame Paint")
+    @Description("Painting of a frame by BoidsPanel")
+    public static final class FramePaint extends TickSpan {}
+
+    @Name("pcd.ass01.DroppedTick")
+    @Label("Dropped Tick")
+    @Description("Tick skipped by GuardianActor or refused by WorldActor while a step is in flight")
+    @Category("Boids")
+    @StackTrace(false)
+    public static final class DroppedTick extends Event {
+
+        @Label("Source")
+        String source;
+
+        @Label("Last Tick")
+        @Description("Last tick completed when the tick was dropped")
+        long lastTick;
+
+        static void commit(String source, long lastTick) {
+            DroppedTick event = new DroppedTick();
+            if (event.shouldCommit()) {
+                event.source = source;
+                event.lastTick = lastTick;
+                event.commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package pcd.ass01;
+
+import java.util.Random;
+
+/**
+ *
+ * Builds the initial state of a flock from a seed, so that
+ * runs and benchmarks can be reproduced.
+ *
+ */
+public final class FlockGenerator {
+
+    public enum Layout {
+        /** Positions spread uniformly over the whole environment. */
+        UNIFORM,
+        /** Positions gathered around a few random centres. */
+        CLUSTERED
+    }
+
+    private static final int CLUSTERS = 8;
+
+    private FlockGenerator() {}
+
+    public static BoidStore generate(int nBoids, long seed, Layout layout,
+                                     double width, double height, double maxSpeed) {
+        BoidStore store = new BoidStore(nBoids);
+        Random random = new Random(seed);
+        double[] centres = new double[layout == Layout.CLUSTERED ? 2 * CLUSTERS : 0];
+        for (int c = 0; c < centres.length; c += 2) {
+            centres[c] = -width/2 + random.nextDouble() * width;
+            centres[c + 1] = -height/2 + random.nextDouble() * height;
+        }
+        for (int i = 0; i < nBoids; i++) {
+            double x, y;
+            if (layout == Layout.CLUSTERED) {
+                int c = 2 * random.nextInt(CLUSTERS);
+                x = wrap(centres[c] + random.nextGaussian() * width / 40, -width/2, width);
+                y = wrap(centres[c + 1] + random.nextGaussian() * height / 40, -height/2, height);
+            } else {
+                x = -width/2 + random.nextDouble() * width;
+                y = -height/2 + random.nextDouble() * height;
+            }
+            double vx = random.nextDouble() * maxSpeed/2 - maxSpeed/4;
+            double vy = random.nextDouble() * maxSpeed/2 - maxSpeed/4;
+            store.set(i, x, y, vx, vy);
+        }
+        return store;
+    }
+
+    private static double wrap(double coord, double min, double size) {
+        double wrapped = min + ((coord - min) % size + size) % size;
+        return wrapped < min + size ? wrapped : min;
+    }
+}
@@ -0,0 +1,77 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+/**
+ *
+ * Computes the new velocity of a boid from the snapshot of its tick.
+ * The kernel used by the engines is chosen once per JVM with
+ * -Dpcd.boids.kernel=scalar|vector; the scalar one is the default and
+ * the fallback when the vector one is not available.
+ * Engines that own their arrays can also replace the neighbour search,
+ * see forEngine.
+ *
+ */
+@FunctionalInterface
+public interface FlockingKernel {
+
+    FlockingKernel SCALAR = BoidRules::steer;
+
+    FlockingKernel SELECTED = byName(System.getProperty("pcd.boids.kernel", "scalar"));
+
+    /**
+     * Stores the new velocity of boid id in out[0], out[1]; x, y, vx, vy
+     * are its current state, the same found in the snapshot.
+     */
+    void steer(Snapshot snap, int id, double x, double y, double vx, double vy, double[] out);
+
+    /**
+     * Called once per tick, on a single thread, before the boids are steered
+     * with the given snapshot, by the kernels that keep state across ticks.
+     */
+    default void prepare(Snapshot snap) {}
+
+    /**
+     * Kernel for an engine stepping n boids, chosen with
+     * -Dpcd.boids.neighbours=grid|verlet|farfield: the selected kernel on the
+     * grid of the snapshot (the default), VerletLists or FarFieldKernel.
+     * The latter two keep state, hence a new instance for each engine.
+     */
+    static FlockingKernel forEngine(int n, WorldParams params) {
+        String name = System.getProperty("pcd.boids.neighbours", "grid");
+        switch (name.trim().toLowerCase()) {
+            case "grid":
+                return SELECTED;
+            case "verlet":
+                return new VerletLists(n, params, VerletLists.configuredSkin());
+            case "farfield":
+                return new FarFieldKernel(params, FarFieldKernel.configuredCells(), FarFieldKernel.configuredCentreBorders());
+            default:
+                throw new IllegalArgumentException("Unknown neighbour search: " + name);
+        }
+    }
+
+    /*
+     * The vector kernel is compiled only by the vector profile and needs
+     * --add-modules jdk.incubator.vector at run time, hence the lookup.
+     */
+    static FlockingKernel byName(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "scalar":
+                return SCALAR;
+            case "vector":
+                try {
+                    FlockingKernel kernel = (FlockingKernel) Class.forName("pcd.ass01.VectorKernel").getConstructor().newInstance();
+                    if (Runtime.version().feature() < 21) {
+                        System.out.println("[FlockingKernel] The masked operations of the vector kernel are intrinsified only since Java 21, expect it to be slow");
+                    }
+                    return kernel;
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    System.out.println("[FlockingKernel] Vector kernel not available (" + e + "), using the scalar one");
+                    return SCALAR;
+                }
+            default:
+                throw new IllegalArgumentException("Unknown kernel: " + name);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * Data-parallel engine: each step is two passes over the boid arrays
+ * on a ForkJoinPool, velocities first and positions afterwards.
+ * State is double-buffered: both passes read the current arrays and
+ * write the next ones, which are swapped in at the end of the step.
+ *
+ */
+public class ForkJoinEngine implements SimulationEngine {
+
+    /* ranges are never split below this size */
+    private static final int MIN_RANGE = 256;
+
+    private final WorldParams params;
+    private final ForkJoinPool pool;
+
+    private double[] x, y, vx, vy;
+    private double[] nextX, nextY, nextVx, nextVy;
+    /* order of the boids in the arrays, null when they are kept in id order */
+    private MortonLayout layout;
+    /* see FlockingKernel.forEngine */
+    private FlockingKernel kernel;
+    private volatile BoidsView state;
+    private volatile double sepW, aliW, cohW;
+
+    /** @param nWorkers parallelism of the pool */
+    public ForkJoinEngine(WorldParams params, int nWorkers) {
+        this.params = params;
+        this.pool = new ForkJoinPool(Math.max(1, nWorkers));
+    }
+
+    @Override
+    public void start(BoidsView initial) {
+        int n = initial.size();
+        x = new double[n];
+        y = new double[n];
+        vx = new double[n];
+        vy = new double[n];
+        nextX = new double[n];
+        nextY = new double[n];
+        nextVx = new double[n];
+        nextVy = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = initial.x(i);
+            y[i] = initial.y(i);
+            vx[i] = initial.vx(i);
+            vy[i] = initial.vy(i);
+        }
+        state = initial;
+        layout = null;
+        if (MortonLayout.enabled()) {
+            layout = new MortonLayout(n);
+            layout.sort(params.grid(initial), x, y, vx, vy);
+        }
+        kernel = FlockingKernel.forEngine(n, params);
+    }
+
+    @Override
+    public CompletionStage<BoidsView> step(long tickId) {
+        return CompletableFuture.supplyAsync(() -> doStep(tickId), pool);
+    }
+
+    private BoidsView doStep(long tickId) {
+        /* the current arrays are not written during the step, so they can back the snapshot */
+        Snapshot snap = params.snapshot(tickId, new BoidsView(x, y, vx, vy),
+                layout == null ? null : layout.slotOf(), sepW, aliW, cohW);
+        kernel.prepare(snap);
+        Bounds bounds = params.bounds();
+
+        FlightEvents.VelocityPhase velocityEvent = new FlightEvents.VelocityPhase();
+        velocityEvent.begin();
+        long start = System.nanoTime();
+        new VelocityPass(snap, 0, x.length).invoke();
+        long velocityDone = System.nanoTime();
+        velocityEvent.commit(tickId, x.length);
+        FlightEvents.PositionPhase positionEvent = new FlightEvents.PositionPhase();
+        positionEvent.begin();
+        new PositionPass(bounds, 0, x.length).invoke();
+        positionEvent.commit(tickId, x.length);
+        Metrics.VELOCITY_PHASE.record(velocityDone - start);
+        Metrics.POSITION_PHASE.record(System.nanoTime() - velocityDone);
+
+        double[] t;
+        t = x; x = nextX; nextX = t;
+        t = y; y = nextY; nextY = t;
+        t = vx; vx = nextVx; nextVx = t;
+        t = vy; vy = nextVy; nextVy = t;
+
+        if (layout == null) {
+            state = new BoidsView(x.clone(), y.clone(), vx.clone(), vy.clone());
+        } else {
+            state = layout.toIdOrder(x, y, vx, vy);
+            if (layout.update(snap.grid(), x, y, vx, vy) && kernel instanceof VerletLists lists) {
+                lists.invalidate();
+            }
+        }
+        return state;
+    }
+
+    @Override
+    public BoidsView state() {
+        return state;
+    }
+
+    @Override
+    public void setWeights(double sepW, double aliW, double cohW) {
+        this.sepW = sepW;
+        this.aliW = aliW;
+        this.cohW = cohW;
+    }
+
+    @Override
+    public void stop() {
+        pool.shutdown();
+    }
+
+    /*
+     * Ranges are halved while they are large and the pool is running out of
+     * queued work, so the split adapts to the flock size and to idle workers.
+     */
+    abstract static class RangeAction extends RecursiveAction {
+
+        protected final int from, to;
+
+        RangeAction(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MIN_RANGE && getSurplusQueuedTaskCount() <= 2) {
+                int mid = (from + to) >>> 1;
+                invokeAll(split(from, mid), split(mid, to));
+            } else {
+                computeRange();
+            }
+        }
+
+        abstract RangeAction split(int from, int to);
+
+        abstract void computeRange();
+    }
+
+    private class VelocityPass extends RangeAction {
+
+        private final Snapshot snap;
+
+        VelocityPass(Snapshot snap, int from, int to) {
+            super(from, to);
+            this.snap = snap;
+        }
+
+        @Override
+        RangeAction split(int from, int to) {
+            return new VelocityPass(snap, from, to);
+        }
+
+        @Override
+        void computeRange() {
+            double[] steering = new double[2];
+            for (int i = from; i < to; i++) {
+                kernel.steer(snap, i, x[i], y[i], vx[i], vy[i], steering);
+                nextVx[i] = steering[0];
+                nextVy[i] = steering[1];
+            }
+        }
+    }
+
+    private class PositionPass extends RangeAction {
+
+        private final Bounds bounds;
+
+        PositionPass(Bounds bounds, int from, int to) {
+            super(from, to);
+            this.bounds = bounds;
+        }
+
+        @Override
+        RangeAction split(int from, int to) {
+            return new PositionPass(bounds, from, to);
+        }
+
+        @Override
+        void computeRange() {
+            for (int i = from; i < to; i++) {
+                nextX[i] = BoidRules.move(x[i], nextVx[i], bounds.minX(), bounds.maxX(), bounds.width());
+                nextY[i] = BoidRules.move(y[i], nextVy[i], bounds.minY(), bounds.maxY(), bounds.height());
+            }
+        }
+    }
+}
@@ -1,22 +1,45 @@
 package pcd.ass01;
 
 import akka.actor.*;
+import akka.dispatch.RequiresMessageQueue;
 import pcd.ass01.SimulationMessages.*;
 
 import java.time.Duration;
 import java.util.Optional;
 
-public class GuardianActor extends AbstractActor {
+public class GuardianActor extends AbstractActor implements RequiresMessageQueue<MeteredMailbox.MeteredSemantics> {
 
-    private final static long TICK_MS = 1000/25;
+    final static long TICK_MS = 1000/25;
+    private final static long RATE_WINDOW_NANOS = 1_000_000_000L;
 
     private ActorRef world;
-    private Optional<ActorRef> renderer;
+    private Optional<ActorRef> renderer = Optional.empty();
     private boolean running = false;
-    private long tickMs = TICK_MS;
+    private final long tickNanos;
+
+    private boolean tickInFlight = false;
+    private long tickStartNanos;
+    private long lastTick;
+    private FlightEvents.Tick tickEvent;
+    private boolean tickPending = false;
+    private Optional<Cancellable> tickTimer = Optional.empty();
+    private long windowStartNanos;
+    private int windowTicks, windowSkipped;
 
     public GuardianActor(ActorRef world){
+        this(world, TICK_MS);
+    }
+
+    /**
+     * Ticks are completion-driven: a fixed-rate timer opens a slot every tickMs
+     * and a tick starts in the slot only if the world reported the previous frame.
+     * Slots that find a tick still in flight are skipped, remembering a single
+     * pending tick that starts as soon as the frame arrives.
+     * With tickMs == 0 ticks run back-to-back, as fast as possible.
+     */
+    public GuardianActor(ActorRef world, long tickMs){
         this.world = world;
+        this.tickNanos = tickMs * 1_000_000;
     }
 
     @Override
@@ -29,14 +52,41 @@ public class GuardianActor extends AbstractActor {
                 .match(AlignmentChange.class, this::onParametersChange)
                 .match(SuspendResumeSimulation.class, this::onSuspendResumeSimulation)
                 .match(RenderFrame.class, this::onRenderFrame)
+                .match(TickGuardian.class, this::onTickSlot)
                 .match(StartSimulation.class, this::onStartGuardian)
+                .match(SaveCheckpoint.class, msg -> world.tell(msg, getSelf()))
+                .match(RestoreCheckpoint.class, msg -> world.tell(msg, getSelf()))
                 .match(ViewActorAttachment.class, this::onAttachView)
                 .match(WorldReady.class, this::onWorldReady)
+                .match(CheckpointRestored.class, this::onCheckpointRestored)
                 .build();
     }
 
     private void onRenderFrame(RenderFrame renderFrame) {
-        renderer.ifPresent((x) -> x.tell(renderFrame, getSelf()));
+        Metrics.TICK_LATENCY.record(System.nanoTime() - tickStartNanos);
+        tickEvent.commit(renderFrame.tickId(), renderFrame.boids().size());
+        lastTick = renderFrame.tickId();
+        Metrics.messagesSent(1);
+        renderer.ifPresentOrElse((x) -> x.tell(renderFrame, getSelf()), () -> renderFrame.boids().release());
+        tickInFlight = false;
+        updateTickRate();
+        if (running && (tickNanos == 0 || tickPending)) {
+            startTick();
+        }
+    }
+
+    private void onTickSlot(TickGuardian msg) {
+        if (!running) return;
+        if (tickInFlight) {
+            if (tickPending) {
+                windowSkipped++;
+                Metrics.DROPPED_TICKS.increment();
+                FlightEvents.DroppedTick.commit("guardian", lastTick);
+            }
+            tickPending = true;
+        } else {
+            startTick();
+        }
     }
 
     private void onParametersChange(Command msg) {
@@ -48,12 +98,16 @@ public class GuardianActor extends AbstractActor {
         if (running) {
             log("Pausing simulation");
             running = false;
+            stopTicking();
+            world.tell(new PauseSimulation(), getSelf());
             renderer.ifPresent((x) -> x.tell(new PauseSimulation(), getSelf()));
         } else {
             log("Resuming simulation");
             running = true;
+            resetTickRate();
+            world.tell(new ResumeSimulation(), getSelf());
             renderer.ifPresent((x) -> x.tell(new ResumeSimulation(), getSelf()));
-            scheduleNextTick();
+            startTicking();
         }
     }
 
@@ -66,12 +120,26 @@ public class GuardianActor extends AbstractActor {
     private void onWorldReady(WorldReady msg) {
         renderer.ifPresent((x) -> x.tell(msg, getSelf()));
         running = true;
-        scheduleNextTick();
+        tickInFlight = false;
+        stopTicking();
+        resetTickRate();
+        startTicking();
+    }
+
+    /*
+     * The world stays paused or running, and a tick in flight, if any, was
+     * completed before the restore: only the view has to know.
+     */
+    private void onCheckpointRestored(CheckpointRestored msg) {
+        lastTick = msg.tickId();
+        renderer.ifPresent((x) -> x.tell(msg, getSelf()));
     }
 
     private void onStop(StopSimulation msg) {
         log("Stopping simulation");
         running = false;
+        stopTicking();
+        world.tell(msg, getSelf());
         renderer.ifPresent(x -> x.tell(msg, getSelf()));
     }
 
@@ -87,18 +155,56 @@ public class GuardianActor extends AbstractActor {
         this.renderer = Optional.of(msg.view());
     }
 
-    private void scheduleNextTick() {
-        if (running) {
-            getContext().getSystem().scheduler().scheduleOnce(
-                    Duration.ofMillis(tickMs),
-                    () -> {
-                        if (running && world != null) {
-                            world.tell(new TickGuardian(), getSelf());
-                            scheduleNextTick();
-                        }
-                    },
-                    getContext().getSystem().dispatcher()
-            );
+    private void startTick() {
+        tickInFlight = true;
+        tickPending = false;
+        tickEvent = new FlightEvents.Tick();
+        tickEvent.begin();
+        tickStartNanos = System.nanoTime();
+        Metrics.messagesSent(1);
+        world.tell(new TickGuardian(), getSelf());
+    }
+
+    private void startTicking() {
+        if (!tickInFlight) {
+            startTick();
+        }
+        if (tickNanos > 0) {
+            tickTimer = Optional.of(getContext().getSystem().scheduler().scheduleAtFixedRate(
+                    Duration.ofNanos(tickNanos),
+                    Duration.ofNanos(tickNanos),
+                    getSelf(),
+                    new TickGuardian(),
+                    getContext().getSystem().dispatcher(),
+                    getSelf()
+            ));
+        }
+    }
+
+    private void stopTicking() {
+        tickTimer.ifPresent(Cancellable::cancel);
+        tickTimer = Optional.empty();
+        tickPending = false;
+    }
+
+    private void resetTickRate() {
+        windowStartNanos = System.nanoTime();
+        windowTicks = 0;
+        windowSkipped = 0;
+    }
+
+    /*
+     * Reports once per second the achieved tick rate against the target one,
+     * with the skipped slots: when the first stays below the second the engine is saturated.
+     */
+    private void updateTickRate() {
+        windowTicks++;
+        long elapsed = System.nanoTime() - windowStartNanos;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            double achieved = windowTicks * 1e9 / elapsed;
+            double target = tickNanos > 0 ? 1e9 / tickNanos : Double.POSITIVE_INFINITY;
+            renderer.ifPresent((x) -> x.tell(new TickRateReport(target, achieved, windowSkipped), getSelf()));
+            resetTickRate();
         }
     }
 
@@ -0,0 +1,88 @@
+package pcd.ass01;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * Log-linear histogram of non-negative longs, in the style of HdrHistogram:
+ * every power of two is split in SUB_BUCKETS linear buckets, so values are
+ * kept with a relative error below 1/SUB_BUCKETS. Recording is lock-free
+ * and never allocates, so it can be used on the hot path from any thread.
+ *
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS * (64 - SUB_BUCKET_BITS));
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(index(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exp = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS * (exp - SUB_BUCKET_BITS + 1) + sub;
+    }
+
+    /* middle of the values falling in the bucket */
+    static long value(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    public double mean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /** Value below which the given fraction (0..1) of the recorded values fall. */
+    public long percentile(double fraction) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(value(i), max.get());
+        }
+        return max.get();
+    }
+
+    /** Concurrent records may be lost, which is acceptable for metrics. */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /** Summary with the values multiplied by scale, e.g. 1e-6 for nanoseconds to milliseconds. */
+    public HistogramSnapshot snapshot(double scale) {
+        return new HistogramSnapshot(count(), mean() * scale, percentile(0.5) * scale,
+                percentile(0.9) * scale, percentile(0.99) * scale, max() * scale);
+    }
+}
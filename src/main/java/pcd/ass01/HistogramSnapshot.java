@@ -0,0 +1,36 @@
+package pcd.ass01;
+
+import java.beans.ConstructorProperties;
+
+/**
+ *
+ * Summary of a Histogram; a bean so that JMX shows it as composite data.
+ *
+ */
+public class HistogramSnapshot {
+
+    private final long count;
+    private final double mean, p50, p90, p99, max;
+
+    @ConstructorProperties({"count", "mean", "p50", "p90", "p99", "max"})
+    public HistogramSnapshot(long count, double mean, double p50, double p90, double p99, double max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getCount() { return count; }
+
+    public double getMean() { return mean; }
+
+    public double getP50() { return p50; }
+
+    public double getP90() { return p90; }
+
+    public double getP99() { return p99; }
+
+    public double getMax() { return max; }
+}
@@ -0,0 +1,88 @@
+package pcd.ass01;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ *
+ * Split of the boids [0, n) in contiguous partitions, one per worker, whose
+ * boundaries follow the cost of the boids. Each worker reports the CPU time
+ * spent on its partition; after the tick the boundaries are moved towards
+ * the split that gives every partition the same cost, assuming the cost is
+ * spread evenly within each partition. Only part of the way is taken at each
+ * tick, to damp the noise of the measures.
+ * The imbalance of every tick, slowest partition over the mean, goes to
+ * Metrics.LOAD_IMBALANCE. Setting -Dpcd.boids.balance=static keeps the
+ * boundaries where they start, e.g. to measure the gain.
+ *
+ */
+final class LoadBalancer {
+
+    private static final double STEP = 0.5;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final int[] bounds;
+    private final long[] cost;
+    private final boolean dynamic;
+
+    LoadBalancer(int n, int partitions) {
+        bounds = new int[partitions + 1];
+        for (int p = 0; p <= partitions; p++) {
+            bounds[p] = (int) ((long) n * p / partitions);
+        }
+        cost = new long[partitions];
+        dynamic = !"static".equals(System.getProperty("pcd.boids.balance", "dynamic"));
+    }
+
+    int partitions() { return cost.length; }
+
+    int from(int partition) { return bounds[partition]; }
+
+    int to(int partition) { return bounds[partition + 1]; }
+
+    /**
+     * Time to be measured by a partition: CPU time of the current thread,
+     * so that workers sharing a core are not charged for each other, or
+     * wall time where the former is not available, e.g. on virtual threads.
+     */
+    static long now() {
+        long cpu = THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+        return cpu >= 0 ? cpu : System.nanoTime();
+    }
+
+    /** Records the cost of a partition for the current tick. */
+    void record(int partition, long nanos) {
+        cost[partition] = nanos;
+    }
+
+    /** Called once all the partitions recorded their cost, before the next tick. */
+    void rebalance() {
+        int partitions = cost.length;
+        long total = 0, max = 0;
+        for (long c : cost) {
+            total += c;
+            max = Math.max(max, c);
+        }
+        if (total <= 0) return;
+        Metrics.LOAD_IMBALANCE.record(Math.round(1000.0 * max * partitions / total));
+        if (!dynamic || partitions == 1) return;
+
+        /* walks the cost, piecewise linear over the boids, placing a boundary every total/partitions */
+        int[] target = new int[partitions + 1];
+        target[partitions] = bounds[partitions];
+        double before = 0;
+        int p = 0;
+        for (int b = 1; b < partitions; b++) {
+            double wanted = (double) total * b / partitions;
+            while (before + cost[p] < wanted) {
+                before += cost[p];
+                p++;
+            }
+            int size = bounds[p + 1] - bounds[p];
+            target[b] = bounds[p] + (cost[p] == 0 ? 0 : (int) Math.round(size * (wanted - before) / cost[p]));
+        }
+        for (int b = 1; b < partitions; b++) {
+            bounds[b] += (int) Math.round(STEP * (target[b] - bounds[b]));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package pcd.ass01;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.*;
+import com.typesafe.config.Config;
+import scala.Option;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * Unbounded mailbox recording its depth in Metrics.MAILBOX_DEPTH at each
+ * enqueue. Actors get it by implementing RequiresMessageQueue<MeteredSemantics>,
+ * bound to "metered-mailbox" in application.conf.
+ *
+ */
+public class MeteredMailbox implements MailboxType, ProducesMessageQueue<MeteredMailbox.MeteredQueue> {
+
+    public interface MeteredSemantics {}
+
+    public MeteredMailbox(ActorSystem.Settings settings, Config config) {
+    }
+
+    @Override
+    public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+        return new MeteredQueue();
+    }
+
+    public static class MeteredQueue implements MessageQueue, UnboundedMessageQueueSemantics, MeteredSemantics {
+
+        private final Queue<Envelope> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger depth = new AtomicInteger();
+
+        @Override
+        public void enqueue(ActorRef receiver, Envelope handle) {
+            queue.offer(handle);
+            Metrics.MAILBOX_DEPTH.record(depth.incrementAndGet());
+        }
+
+        @Override
+        public Envelope dequeue() {
+            Envelope handle = queue.poll();
+            if (handle != null) depth.decrementAndGet();
+            return handle;
+        }
+
+        @Override
+        public int numberOfMessages() {
+            return depth.get();
+        }
+
+        @Override
+        public boolean hasMessages() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+            for (Envelope handle = dequeue(); handle != null; handle = dequeue()) {
+                deadLetters.enqueue(owner, handle);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package pcd.ass01;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * Metrics of the simulation in this JVM, recorded on the hot path
+ * without locks, allocation or console output. They are reset when a
+ * simulation starts and exposed through JMX (MetricsMXBean) and the
+ * overlay of BoidsPanel.
+ * Durations are in nanoseconds. Phase durations are the wall time of the
+ * phase over the whole flock for the fork/join and threaded engines, and
+ * over the slice of a worker or region for the actor engines.
+ * Messages are the ones sent by the actors of the simulation in this JVM.
+ *
+ */
+public final class Metrics implements MetricsMXBean {
+
+    /** From the tick sent by GuardianActor to its frame coming back. */
+    public static final Histogram TICK_LATENCY = new Histogram();
+    public static final Histogram SNAPSHOT_BUILD = new Histogram();
+    public static final Histogram VELOCITY_PHASE = new Histogram();
+    public static final Histogram POSITION_PHASE = new Histogram();
+    /** From the frame reaching ViewActor to the end of its painting. */
+    public static final Histogram RENDER_LATENCY = new Histogram();
+    public static final Histogram MESSAGES_PER_TICK = new Histogram();
+    /** Sampled at each enqueue in a MeteredMailbox. */
+    public static final Histogram MAILBOX_DEPTH = new Histogram();
+    /** Ticks between two sorts of a MortonLayout. */
+    public static final Histogram LAYOUT_SORT_INTERVAL = new Histogram();
+    /** Ticks between two builds of VerletLists. */
+    public static final Histogram NEIGHBOUR_REBUILD_INTERVAL = new Histogram();
+    /** Per tick, slowest partition of a LoadBalancer over the mean, in thousandths. */
+    public static final Histogram LOAD_IMBALANCE = new Histogram();
+
+    public static final LongAdder TICKS = new LongAdder();
+    /** Tick slots skipped by GuardianActor or ticks refused by WorldActor. */
+    public static final LongAdder DROPPED_TICKS = new LongAdder();
+    /** Frames replaced by a newer one before being painted. */
+    public static final LongAdder DROPPED_FRAMES = new LongAdder();
+
+    private static final LongAdder messages = new LongAdder();
+    private static final String OBJECT_NAME = "pcd.ass01:type=Metrics";
+
+    private Metrics() {}
+
+    public static void messagesSent(int count) {
+        messages.add(count);
+    }
+
+    /** Closes a tick, moving the messages counted so far to MESSAGES_PER_TICK. */
+    public static void tickCompleted() {
+        TICKS.increment();
+        MESSAGES_PER_TICK.record(messages.sumThenReset());
+    }
+
+    public static void resetAll() {
+        for (Histogram h : new Histogram[] {TICK_LATENCY, SNAPSHOT_BUILD, VELOCITY_PHASE, POSITION_PHASE,
+                RENDER_LATENCY, MESSAGES_PER_TICK, MAILBOX_DEPTH, LAYOUT_SORT_INTERVAL,
+                NEIGHBOUR_REBUILD_INTERVAL, LOAD_IMBALANCE}) {
+            h.reset();
+        }
+        for (LongAdder counter : new LongAdder[] {TICKS, DROPPED_TICKS, DROPPED_FRAMES, messages}) {
+            counter.reset();
+        }
+    }
+
+    /** Registers the MXBean in the platform MBean server, once per JVM. */
+    public static synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            var server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new Metrics(), name);
+            }
+        } catch (JMException e) {
+            System.out.println("[Metrics] Cannot register the MXBean: " + e);
+        }
+    }
+
+    /** One-line summary of the phase timings, for the headless runs. */
+    public static String summary() {
+        return String.format("snapshot p50 %.3f ms, velocity p50 %.3f ms, position p50 %.3f ms, "
+                        + "messages/tick p50 %d, mailbox depth p99 %d max %d, dropped ticks %d, "
+                        + "layout sorts %d every p50 %d ticks, neighbour list builds %d every p50 %d ticks, "
+                        + "load imbalance p50 %.2f max %.2f",
+                SNAPSHOT_BUILD.percentile(0.5) / 1e6, VELOCITY_PHASE.percentile(0.5) / 1e6,
+                POSITION_PHASE.percentile(0.5) / 1e6, MESSAGES_PER_TICK.percentile(0.5),
+                MAILBOX_DEPTH.percentile(0.99), MAILBOX_DEPTH.max(), DROPPED_TICKS.sum(),
+                LAYOUT_SORT_INTERVAL.count(), LAYOUT_SORT_INTERVAL.percentile(0.5),
+                NEIGHBOUR_REBUILD_INTERVAL.count(), NEIGHBOUR_REBUILD_INTERVAL.percentile(0.5),
+                LOAD_IMBALANCE.percentile(0.5) / 1e3, LOAD_IMBALANCE.max() / 1e3);
+    }
+
+    @Override public HistogramSnapshot getTickLatencyMs() { return TICK_LATENCY.snapshot(1e-6); }
+
+    @Override public HistogramSnapshot getSnapshotBuildMs() { return SNAPSHOT_BUILD.snapshot(1e-6); }
+
+    @Override public HistogramSnapshot getVelocityPhaseMs() { return VELOCITY_PHASE.snapshot(1e-6); }
+
+    @Override public HistogramSnapshot getPositionPhaseMs() { return POSITION_PHASE.snapshot(1e-6); }
+
+    @Override public HistogramSnapshot getRenderLatencyMs() { return RENDER_LATENCY.snapshot(1e-6); }
+
+    @Override public HistogramSnapshot getMessagesPerTick() { return MESSAGES_PER_TICK.snapshot(1); }
+
+    @Override public HistogramSnapshot getMailboxDepth() { return MAILBOX_DEPTH.snapshot(1); }
+
+    @Override public HistogramSnapshot getLayoutSortInterval() { return LAYOUT_SORT_INTERVAL.snapshot(1); }
+
+    @Override public HistogramSnapshot getNeighbourRebuildInterval() { return NEIGHBOUR_REBUILD_INTERVAL.snapshot(1); }
+
+    @Override public HistogramSnapshot getLoadImbalance() { return LOAD_IMBALANCE.snapshot(1e-3); }
+
+    @Override public long getTicks() { return TICKS.sum(); }
+
+    @Override public long getDroppedTicks() { return DROPPED_TICKS.sum(); }
+
+    @Override public long getDroppedFrames() { return DROPPED_FRAMES.sum(); }
+
+    @Override public void reset() { resetAll(); }
+}
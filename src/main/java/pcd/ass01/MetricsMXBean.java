@@ -0,0 +1,38 @@
+package pcd.ass01;
+
+/**
+ *
+ * JMX view of Metrics, registered as pcd.ass01:type=Metrics.
+ * Durations are in milliseconds, the other values are counts.
+ *
+ */
+public interface MetricsMXBean {
+
+    HistogramSnapshot getTickLatencyMs();
+
+    HistogramSnapshot getSnapshotBuildMs();
+
+    HistogramSnapshot getVelocityPhaseMs();
+
+    HistogramSnapshot getPositionPhaseMs();
+
+    HistogramSnapshot getRenderLatencyMs();
+
+    HistogramSnapshot getMessagesPerTick();
+
+    HistogramSnapshot getMailboxDepth();
+
+    HistogramSnapshot getLayoutSortInterval();
+
+    HistogramSnapshot getNeighbourRebuildInterval();
+
+    HistogramSnapshot getLoadImbalance();
+
+    long getTicks();
+
+    long getDroppedTicks();
+
+    long getDroppedFrames();
+
+    void reset();
+}
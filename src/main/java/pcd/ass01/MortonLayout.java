@@ -0,0 +1,136 @@
+package pcd.ass01;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Order of the boids in the arrays of an engine. Boids are kept sorted by the
+ * Z-order (Morton) key of their grid cell, then by id, so that boids close in
+ * space are close in memory too: consecutive boids scan the same neighbouring
+ * cells and the grid is filled with mostly sequential reads.
+ * As boids move the order decays; it is measured on the grid of each tick and
+ * the arrays are sorted again once more than RESORT_DISORDER of the boids are
+ * out of place, so the interval between sorts adapts to how fast the flock mixes.
+ * Ids never change: ids() and slotOf() map slots to ids and back, and states
+ * leave the engine in id order. The grid visits the boids of each cell in id
+ * order too (see SpatialGrid.build), so results do not depend on the layout.
+ * Setting -Dpcd.boids.layout=id keeps the slots in id order, e.g. to measure the gain.
+ *
+ */
+public final class MortonLayout {
+
+    private static final double RESORT_DISORDER = 0.2;
+
+    private final int[] ids;
+    private final int[] slotOf;
+    private int ticksSinceSort;
+
+    MortonLayout(int n) {
+        ids = new int[n];
+        slotOf = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+            slotOf[i] = i;
+        }
+    }
+
+    static boolean enabled() {
+        return !"id".equals(System.getProperty("pcd.boids.layout", "morton"));
+    }
+
+    /** Id of the boid in each slot. */
+    int[] ids() { return ids; }
+
+    /** Slot of each boid, indexed by id. */
+    int[] slotOf() { return slotOf; }
+
+    /**
+     * Called once per tick with the grid of the tick and the arrays at its end:
+     * sorts them when the grid shows that the order has decayed.
+     * Returns whether they have been sorted.
+     */
+    boolean update(SpatialGrid grid, double[] x, double[] y, double[] vx, double[] vy) {
+        ticksSinceSort++;
+        if (disorder(grid) <= RESORT_DISORDER) return false;
+        Metrics.LAYOUT_SORT_INTERVAL.record(ticksSinceSort);
+        sort(grid, x, y, vx, vy);
+        return true;
+    }
+
+    /*
+     * Fraction of the boids whose slot does not follow the one of the previous
+     * boid of their cell: none right after a sort, since the boids of a cell
+     * then fill consecutive slots in id order.
+     */
+    static double disorder(SpatialGrid grid) {
+        int[] cellStart = grid.cellStarts();
+        int[] slots = grid.ids();
+        if (slots.length == 0) return 0;
+        int breaks = 0;
+        for (int c = 0; c + 1 < cellStart.length; c++) {
+            for (int pos = cellStart[c] + 1; pos < cellStart[c + 1]; pos++) {
+                if (slots[pos] != slots[pos - 1] + 1) breaks++;
+            }
+        }
+        return (double) breaks / slots.length;
+    }
+
+    /** Sorts the arrays, and the mapping, by the Morton key of the cells in the given grid, then by id. */
+    void sort(SpatialGrid grid, double[] x, double[] y, double[] vx, double[] vy) {
+        int n = ids.length;
+        long[] keys = new long[n];
+        for (int s = 0; s < n; s++) {
+            keys[s] = (long) morton(grid.cellX(x[s]), grid.cellY(y[s])) << 32 | ids[s];
+        }
+        Arrays.sort(keys);
+        int[] from = new int[n];
+        for (int s = 0; s < n; s++) {
+            int id = (int) keys[s];
+            from[s] = slotOf[id];
+        }
+        for (int s = 0; s < n; s++) {
+            ids[s] = (int) keys[s];
+            slotOf[ids[s]] = s;
+        }
+        permute(x, from);
+        permute(y, from);
+        permute(vx, from);
+        permute(vy, from);
+        ticksSinceSort = 0;
+    }
+
+    /** State of the boids in id order, copied out of arrays in slot order. */
+    BoidsView toIdOrder(double[] x, double[] y, double[] vx, double[] vy) {
+        int n = ids.length;
+        double[] ox = new double[n], oy = new double[n], ovx = new double[n], ovy = new double[n];
+        for (int id = 0; id < n; id++) {
+            int s = slotOf[id];
+            ox[id] = x[s];
+            oy[id] = y[s];
+            ovx[id] = vx[s];
+            ovy[id] = vy[s];
+        }
+        return new BoidsView(ox, oy, ovx, ovy);
+    }
+
+    private static void permute(double[] values, int[] from) {
+        double[] old = values.clone();
+        for (int s = 0; s < values.length; s++) {
+            values[s] = old[from[s]];
+        }
+    }
+
+    /* interleaves the bits of the cell coordinates, x in the even bits */
+    static int morton(int cx, int cy) {
+        return spread(cx) | spread(cy) << 1;
+    }
+
+    private static int spread(int v) {
+        v &= 0xffff;
+        v = (v | v << 8) & 0x00ff00ff;
+        v = (v | v << 4) & 0x0f0f0f0f;
+        v = (v | v << 2) & 0x33333333;
+        v = (v | v << 1) & 0x55555555;
+        return v;
+    }
+}
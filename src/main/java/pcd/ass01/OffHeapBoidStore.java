@@ -0,0 +1,181 @@
+package pcd.ass01;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * State of the flock kept outside the Java heap, in generations of direct
+ * buffers indexed by boid id: the current one, read by the step, and the
+ * next one, written by it and made current by flip().
+ * The frames handed out by flip() are read-only views over the memory of
+ * their generation, never copies. A generation is written again only once
+ * it is no longer current and its frame has been released, so a frame
+ * stays unchanged for as long as its consumers hold it; the generations
+ * released are kept for the next steps, so with consumers that release
+ * their frames in time the store settles on a few generations.
+ * A frame never released only keeps its own generation, which is freed by
+ * the garbage collector with the frame.
+ *
+ */
+public final class OffHeapBoidStore {
+
+    private final int n;
+    /* generations no longer current whose frame was released; written only by a step */
+    private final Queue<Generation> free = new ConcurrentLinkedQueue<>();
+    private Generation current, next;
+
+    public OffHeapBoidStore(int nBoids) {
+        this.n = nBoids;
+        this.current = allocate();
+        current.holds.set(1);
+    }
+
+    private Generation allocate() {
+        return new Generation(allocateDoubles(n), allocateDoubles(n), allocateDoubles(n), allocateDoubles(n));
+    }
+
+    private static DoubleBuffer allocateDoubles(int n) {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(n, Double.BYTES))
+                .order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /** Writes a boid in the current generation, e.g. to load the initial state. */
+    public void set(int id, double x, double y, double vx, double vy) {
+        current.x.put(id, x);
+        current.y.put(id, y);
+        current.vx.put(id, vx);
+        current.vy.put(id, vy);
+    }
+
+    /* Buffers of the current generation, read by the step. */
+
+    DoubleBuffer x() { return current.x; }
+
+    DoubleBuffer y() { return current.y; }
+
+    DoubleBuffer vx() { return current.vx; }
+
+    DoubleBuffer vy() { return current.vy; }
+
+    /** Picks the generation written by the step: a released one, if any, or a new one. */
+    void reserveNext() {
+        if (next == null) {
+            next = free.poll();
+            if (next == null) next = allocate();
+            next.holds.set(1);
+        }
+    }
+
+    /* Buffers of the next generation, written by the step, after reserveNext. */
+
+    DoubleBuffer nextX() { return next.x; }
+
+    DoubleBuffer nextY() { return next.y; }
+
+    DoubleBuffer nextVx() { return next.vx; }
+
+    DoubleBuffer nextVy() { return next.vy; }
+
+    /**
+     * Makes the next generation the current one, once the step has written it,
+     * and returns its frame, to be released by the consumer that ends its life.
+     */
+    BoidsView flip() {
+        Generation previous = current;
+        current = next;
+        next = null;
+        previous.release();
+        current.holds.incrementAndGet();
+        return new View(current, true);
+    }
+
+    /**
+     * View of the current generation that holds nothing: valid only until the
+     * next step, e.g. to read the state between two steps.
+     */
+    BoidsView view() {
+        return new View(current, false);
+    }
+
+    private final class Generation {
+
+        private final DoubleBuffer x, y, vx, vy;
+        /* one for being current or next, one for the frame not yet released */
+        private final AtomicInteger holds = new AtomicInteger();
+
+        private Generation(DoubleBuffer x, DoubleBuffer y, DoubleBuffer vx, DoubleBuffer vy) {
+            this.x = x;
+            this.y = y;
+            this.vx = vx;
+            this.vy = vy;
+        }
+
+        private void release() {
+            if (holds.decrementAndGet() == 0) {
+                free.add(this);
+            }
+        }
+    }
+
+    static final class View extends BoidsView {
+
+        private final int n;
+        private final DoubleBuffer x, y, vx, vy;
+        private final Generation generation;
+        /* null for the views that hold nothing */
+        private final AtomicBoolean held;
+
+        private View(Generation generation, boolean holding) {
+            this.generation = generation;
+            this.n = generation.x.capacity();
+            this.x = generation.x.asReadOnlyBuffer();
+            this.y = generation.y.asReadOnlyBuffer();
+            this.vx = generation.vx.asReadOnlyBuffer();
+            this.vy = generation.vy.asReadOnlyBuffer();
+            this.held = holding ? new AtomicBoolean(true) : null;
+        }
+
+        @Override
+        public int size() {
+            return n;
+        }
+
+        @Override
+        public double x(int id) {
+            return x.get(id);
+        }
+
+        @Override
+        public double y(int id) {
+            return y.get(id);
+        }
+
+        @Override
+        public double vx(int id) {
+            return vx.get(id);
+        }
+
+        @Override
+        public double vy(int id) {
+            return vy.get(id);
+        }
+
+        @Override
+        public void release() {
+            if (held != null && held.compareAndSet(true, false)) {
+                generation.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ *
+ * Fork/join engine for flocks too large for the heap: the boids live in an
+ * OffHeapBoidStore, and the grid of each tick is an off-heap index of the
+ * boid ids bucketed by cell, with their state copied in cell order, rebuilt
+ * in place, so that the heap used by a step does not grow with the flock.
+ * The velocity pass walks the boids in cell order too, so that consecutive
+ * boids scan the same cells. Neighbours are visited in the same order as on
+ * a SpatialGrid, hence results are those of the other engines. Steps
+ * return the frames of the store, which consumers release when done.
+ * Only the scalar kernel on the grid is supported, as the other kernels read
+ * a SpatialGrid: other -Dpcd.boids.kernel and -Dpcd.boids.neighbours are
+ * ignored, with a warning.
+ *
+ */
+public class OffHeapEngine implements SimulationEngine {
+
+    private final WorldParams params;
+    private final ForkJoinPool pool;
+    /* geometry of the cells, the same as in the grids of the other engines */
+    private final SpatialGrid cells;
+
+    private OffHeapBoidStore store;
+    /* boid ids in cell order, cell of each boid, start of each cell in ids */
+    private IntBuffer ids, cellOf;
+    /* state of the boids in cell order */
+    private DoubleBuffer cellX, cellY, cellVx, cellVy;
+    private int[] cellStart, next;
+    private volatile BoidsView state;
+    private volatile double sepW, aliW, cohW;
+
+    /** @param nWorkers parallelism of the pool */
+    public OffHeapEngine(WorldParams params, int nWorkers) {
+        this.params = params;
+        this.pool = new ForkJoinPool(Math.max(1, nWorkers));
+        this.cells = params.grid(new BoidsView(new double[0], new double[0], new double[0], new double[0]));
+        if (FlockingKernel.SELECTED != FlockingKernel.SCALAR) {
+            log("Only the scalar kernel is supported, ignoring -Dpcd.boids.kernel");
+        }
+        if (!"grid".equals(System.getProperty("pcd.boids.neighbours", "grid").trim().toLowerCase())) {
+            log("Only the grid neighbour search is supported, ignoring -Dpcd.boids.neighbours");
+        }
+    }
+
+    private static void log(String msg) {
+        System.out.println("[OffHeapEngine] " + msg);
+    }
+
+    @Override
+    public void start(BoidsView initial) {
+        int n = initial.size();
+        store = new OffHeapBoidStore(n);
+        for (int i = 0; i < n; i++) {
+            store.set(i, initial.x(i), initial.y(i), initial.vx(i), initial.vy(i));
+        }
+        ids = allocateInts(n);
+        cellOf = allocateInts(n);
+        cellX = allocateDoubles(n);
+        cellY = allocateDoubles(n);
+        cellVx = allocateDoubles(n);
+        cellVy = allocateDoubles(n);
+        cellStart = new int[cells.cols() * cells.rows() + 1];
+        next = new int[cells.cols() * cells.rows()];
+        state = store.view();
+    }
+
+    private static IntBuffer allocateInts(int n) {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(n, Integer.BYTES))
+                .order(ByteOrder.nativeOrder())
+                .asIntBuffer();
+    }
+
+    private static DoubleBuffer allocateDoubles(int n) {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(n, Double.BYTES))
+                .order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+    }
+
+    @Override
+    public CompletionStage<BoidsView> step(long tickId) {
+        return CompletableFuture.supplyAsync(() -> doStep(tickId), pool);
+    }
+
+    private BoidsView doStep(long tickId) {
+        int n = store.size();
+        store.reserveNext();
+        FlightEvents.SnapshotBuild snapshotEvent = new FlightEvents.SnapshotBuild();
+        snapshotEvent.begin();
+        long start = System.nanoTime();
+        buildIndex();
+        long indexDone = System.nanoTime();
+        snapshotEvent.commit(tickId, n);
+        /* no SpatialGrid: the snapshot only carries the parameters of the rules */
+        Snapshot snap = new Snapshot(tickId, null, sepW, aliW, cohW,
+                params.perceptionRadius(), params.avoidRadius(), params.maxSpeed());
+        Bounds bounds = params.bounds();
+
+        FlightEvents.VelocityPhase velocityEvent = new FlightEvents.VelocityPhase();
+        velocityEvent.begin();
+        new VelocityPass(snap, 0, n).invoke();
+        long velocityDone = System.nanoTime();
+        velocityEvent.commit(tickId, n);
+        FlightEvents.PositionPhase positionEvent = new FlightEvents.PositionPhase();
+        positionEvent.begin();
+        new PositionPass(bounds, 0, n).invoke();
+        positionEvent.commit(tickId, n);
+        Metrics.SNAPSHOT_BUILD.record(indexDone - start);
+        Metrics.VELOCITY_PHASE.record(velocityDone - indexDone);
+        Metrics.POSITION_PHASE.record(System.nanoTime() - velocityDone);
+
+        state = store.flip();
+        return state;
+    }
+
+    /* counting sort of the ids by cell, as in SpatialGrid.build */
+    private void buildIndex() {
+        DoubleBuffer x = store.x(), y = store.y(), vx = store.vx(), vy = store.vy();
+        int n = store.size();
+        Arrays.fill(cellStart, 0);
+        for (int i = 0; i < n; i++) {
+            int cell = cells.cellX(x.get(i)) + cells.cols() * cells.cellY(y.get(i));
+            cellOf.put(i, cell);
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < next.length; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        for (int i = 0; i < n; i++) {
+            int pos = next[cellOf.get(i)]++;
+            ids.put(pos, i);
+            cellX.put(pos, x.get(i));
+            cellY.put(pos, y.get(i));
+            cellVx.put(pos, vx.get(i));
+            cellVy.put(pos, vy.get(i));
+        }
+    }
+
+    /* BoidRules.steer over the off-heap index, for the boid at the given position in it */
+    private void steer(Snapshot snap, int self, double[] out) {
+        double x = cellX.get(self), y = cellY.get(self);
+        double perceptionRadius = snap.perceptionRadius();
+        double avoidRadius = snap.avoidRadius();
+
+        int nearby = 0, avoided = 0;
+        double sumVx = 0, sumVy = 0, sumX = 0, sumY = 0, sepDx = 0, sepDy = 0;
+        int cols = cells.cols();
+        int cx = cells.cellX(x);
+        int cy = cells.cellY(y);
+        int minCx = Math.max(0, cx - 1);
+        int maxCx = Math.min(cols - 1, cx + 1);
+        int maxCy = Math.min(cells.rows() - 1, cy + 1);
+        for (int gy = Math.max(0, cy - 1); gy <= maxCy; gy++) {
+            int end = cellStart[maxCx + cols * gy + 1];
+            for (int pos = cellStart[minCx + cols * gy]; pos < end; pos++) {
+                if (pos == self) continue;
+                double ox = cellX.get(pos);
+                double oy = cellY.get(pos);
+                double dx = ox - x;
+                double dy = oy - y;
+                double distance = Math.sqrt(dx*dx + dy*dy);
+                if (distance < perceptionRadius) {
+                    nearby++;
+                    sumVx += cellVx.get(pos);
+                    sumVy += cellVy.get(pos);
+                    sumX += ox;
+                    sumY += oy;
+                    if (distance < avoidRadius) {
+                        sepDx += x - ox;
+                        sepDy += y - oy;
+                        avoided++;
+                    }
+                }
+            }
+        }
+        BoidRules.applyRules(snap, x, y, cellVx.get(self), cellVy.get(self), nearby, avoided,
+                sumVx, sumVy, sumX, sumY, sepDx, sepDy, out);
+    }
+
+    @Override
+    public BoidsView state() {
+        return state;
+    }
+
+    @Override
+    public void setWeights(double sepW, double aliW, double cohW) {
+        this.sepW = sepW;
+        this.aliW = aliW;
+        this.cohW = cohW;
+    }
+
+    @Override
+    public void stop() {
+        pool.shutdown();
+    }
+
+    private class VelocityPass extends ForkJoinEngine.RangeAction {
+
+        private final Snapshot snap;
+
+        VelocityPass(Snapshot snap, int from, int to) {
+            super(from, to);
+            this.snap = snap;
+        }
+
+        @Override
+        ForkJoinEngine.RangeAction split(int from, int to) {
+            return new VelocityPass(snap, from, to);
+        }
+
+        @Override
+        void computeRange() {
+            double[] steering = new double[2];
+            DoubleBuffer nextVx = store.nextVx(), nextVy = store.nextVy();
+            for (int pos = from; pos < to; pos++) {
+                steer(snap, pos, steering);
+                int id = ids.get(pos);
+                nextVx.put(id, steering[0]);
+                nextVy.put(id, steering[1]);
+            }
+        }
+    }
+
+    private class PositionPass extends ForkJoinEngine.RangeAction {
+
+        private final Bounds bounds;
+
+        PositionPass(Bounds bounds, int from, int to) {
+            super(from, to);
+            this.bounds = bounds;
+        }
+
+        @Override
+        ForkJoinEngine.RangeAction split(int from, int to) {
+            return new PositionPass(bounds, from, to);
+        }
+
+        @Override
+        void computeRange() {
+            DoubleBuffer x = store.x(), y = store.y();
+            DoubleBuffer nextX = store.nextX(), nextY = store.nextY(), nextVx = store.nextVx(), nextVy = store.nextVy();
+            for (int i = from; i < to; i++) {
+                nextX.put(i, BoidRules.move(x.get(i), nextVx.get(i), bounds.minX(), bounds.maxX(), bounds.width()));
+                nextY.put(i, BoidRules.move(y.get(i), nextVy.get(i), bounds.minY(), bounds.maxY(), bounds.height()));
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package pcd.ass01;
+
+/**
+ *
+ * ThreadedEngine running on a fixed pool of platform threads, one per
+ * slice of the flock. Threads are created once per simulation
+ * and parked on the StepGate between steps and while suspended.
+ *
+ */
+public class PlatformThreadEngine extends ThreadedEngine {
+
+    private final int nThreads;
+
+    /** @param nWorkers number of threads, typically the available cores */
+    public PlatformThreadEngine(WorldParams params, int nWorkers) {
+        super(params);
+        this.nThreads = Math.max(1, nWorkers);
+    }
+
+    @Override
+    protected int groupCount(int nBoids) {
+        return nThreads;
+    }
+
+    @Override
+    protected Thread startWorker(Runnable group, String name) {
+        Thread thread = new Thread(group, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
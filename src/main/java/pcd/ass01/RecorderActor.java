@@ -0,0 +1,101 @@
+package pcd.ass01;
+
+import akka.actor.*;
+import pcd.ass01.SimulationMessages.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ *
+ * Recording stage between GuardianActor and the view: appends the state of
+ * each frame to a TrajectoryFile, then forwards it, like any other message.
+ * Frames are written in this actor, so the engine is never slowed down by
+ * the recording; each simulation started replaces the file, whose first
+ * record is the initial state, as tick 0, and so does each restore, from
+ * the restored tick.
+ *
+ */
+public class RecorderActor extends AbstractActor {
+
+    private final ActorRef view;
+    private final Path path;
+    private final int maxTicks;
+    private Optional<TrajectoryFile> file = Optional.empty();
+
+    public RecorderActor(ActorRef view, Path path, int maxTicks) {
+        this.view = view;
+        this.path = path;
+        this.maxTicks = maxTicks;
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(WorldReady.class, this::onWorldReady)
+                .match(CheckpointRestored.class, this::onCheckpointRestored)
+                .match(RenderFrame.class, this::onRenderFrame)
+                .matchAny(msg -> view.forward(msg, getContext()))
+                .build();
+    }
+
+    @Override
+    public void postStop() {
+        close();
+    }
+
+    private void onWorldReady(WorldReady msg) {
+        record(0, msg.boids());
+        view.forward(msg, getContext());
+    }
+
+    /* the ticks of the restored run may go back, so they get a new file, starting at the restored tick */
+    private void onCheckpointRestored(CheckpointRestored msg) {
+        record(msg.tickId(), msg.boids());
+        view.forward(msg, getContext());
+    }
+
+    private void record(long firstTick, BoidsView first) {
+        close();
+        try {
+            TrajectoryFile created = TrajectoryFile.create(path, first.size(), maxTicks);
+            created.append(firstTick, first);
+            file = Optional.of(created);
+            log("Recording to " + path);
+        } catch (IOException e) {
+            log("Cannot record to " + path + ": " + e);
+        }
+    }
+
+    private void onRenderFrame(RenderFrame msg) {
+        file.ifPresent(f -> {
+            try {
+                f.append(msg.tickId(), msg.boids());
+                if (f.isFull()) {
+                    log("Recording stopped after " + f.ticks() + " ticks, the file is full");
+                    close();
+                }
+            } catch (IOException e) {
+                log("Recording stopped: " + e);
+                close();
+            }
+        });
+        view.forward(msg, getContext());
+    }
+
+    private void close() {
+        file.ifPresent(f -> {
+            try {
+                f.close();
+            } catch (IOException e) {
+                log("Cannot close " + path + ": " + e);
+            }
+        });
+        file = Optional.empty();
+    }
+
+    private void log(String msg) {
+        System.out.println("[RecorderActor] " + msg);
+    }
+}
@@ -0,0 +1,204 @@
+package pcd.ass01;
+
+import akka.actor.*;
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.*;
+
+/**
+ *
+ * Owner of the boids of a region of the world. For each RegionStep it
+ * sends its border boids (halo) to the neighbouring regions, waits for
+ * theirs, updates its own boids, then hands the ones that left the region
+ * over to their new owners, also across the wrap-around edges, and
+ * reports its boids to the coordinator, i.e. the sender of RegionRefs.
+ * Regions may live in different JVMs of a cluster, see RegionHostActor.
+ * Handovers of a tick are applied before computing the halos of the next
+ * one, so every region waits for all of them first.
+ *
+ */
+public class RegionActor extends AbstractActor {
+
+    private final int region;
+    private final WorldParams params;
+    private final RegionLayout layout;
+    private final Bounds bounds;
+    private final int[] neighbours;
+    private List<ActorRef> regions = List.of();
+    private ActorRef coordinator = ActorRef.noSender();
+
+    private BoidBuffer owned;
+    private final double[] steering = new double[2];
+
+    private RegionStep pendingStep;
+    private boolean haloSent = false;
+    private long previousTick = -1;
+    private final Map<Long, List<BoidSet>> halos = new HashMap<>();
+    private final Map<Long, List<BoidSet>> handovers = new HashMap<>();
+
+    public RegionActor(int region, WorldParams params, RegionLayout layout, BoidSet boids) {
+        this.region = region;
+        this.params = params;
+        this.layout = layout;
+        this.bounds = params.bounds();
+        this.neighbours = layout.neighbours(region);
+        this.owned = new BoidBuffer(boids.size());
+        this.owned.addAll(boids);
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(RegionRefs.class, this::onRegionRefs)
+                .match(RegionStep.class, this::onRegionStep)
+                .match(Halo.class, msg -> received(halos, msg.tickId(), msg.boids()))
+                .match(Handover.class, msg -> received(handovers, msg.tickId(), msg.boids()))
+                .build();
+    }
+
+    private void onRegionRefs(RegionRefs msg) {
+        this.regions = msg.regions();
+        this.coordinator = getSender();
+    }
+
+    private void onRegionStep(RegionStep msg) {
+        pendingStep = msg;
+        advance();
+    }
+
+    private void received(Map<Long, List<BoidSet>> messages, long tickId, BoidSet boids) {
+        messages.computeIfAbsent(tickId, t -> new ArrayList<>()).add(boids);
+        advance();
+    }
+
+    private int count(Map<Long, List<BoidSet>> messages, long tickId) {
+        return messages.getOrDefault(tickId, List.of()).size();
+    }
+
+    private void advance() {
+        if (pendingStep == null) return;
+        long tick = pendingStep.tickId();
+        if (!haloSent) {
+            if (previousTick >= 0 && count(handovers, previousTick) < neighbours.length) return;
+            for (BoidSet boids : handovers.getOrDefault(previousTick, List.of())) {
+                owned.addAll(boids);
+            }
+            handovers.remove(previousTick);
+            sendHalos(tick);
+            haloSent = true;
+        }
+        if (count(halos, tick) < neighbours.length) return;
+        step(pendingStep, halos.getOrDefault(tick, List.of()));
+        halos.remove(tick);
+        previousTick = tick;
+        pendingStep = null;
+        haloSent = false;
+    }
+
+    private void sendHalos(long tick) {
+        Metrics.messagesSent(neighbours.length);
+        for (int neighbour : neighbours) {
+            BoidBuffer halo = new BoidBuffer();
+            for (int i = 0; i < owned.size(); i++) {
+                if (layout.inHalo(neighbour, owned.x(i), owned.y(i))) {
+                    halo.add(owned.id(i), owned.x(i), owned.y(i), owned.vx(i), owned.vy(i));
+                }
+            }
+            regions.get(neighbour).tell(new Halo(tick, region, halo.toSet()), getSelf());
+        }
+    }
+
+    private void step(RegionStep msg, List<BoidSet> received) {
+        /*
+         * The local flock (own boids, then halos) is ordered by boid id, like the
+         * whole flock: the grid then visits the neighbours in the same order as a
+         * grid over all the boids, and the result is the same.
+         */
+        int nOwned = owned.size();
+        int total = nOwned;
+        for (BoidSet boids : received) total += boids.size();
+        long[] order = new long[total];
+        double[] x = new double[total], y = new double[total], vx = new double[total], vy = new double[total];
+        int k = 0;
+        for (int i = 0; i < nOwned; i++, k++) {
+            order[k] = (long) owned.id(i) << 32 | k;
+            x[k] = owned.x(i);
+            y[k] = owned.y(i);
+            vx[k] = owned.vx(i);
+            vy[k] = owned.vy(i);
+        }
+        for (BoidSet boids : received) {
+            for (int i = 0; i < boids.size(); i++, k++) {
+                order[k] = (long) boids.ids()[i] << 32 | k;
+                x[k] = boids.x()[i];
+                y[k] = boids.y()[i];
+                vx[k] = boids.vx()[i];
+                vy[k] = boids.vy()[i];
+            }
+        }
+        Arrays.sort(order);
+        double[] lx = new double[total], ly = new double[total], lvx = new double[total], lvy = new double[total];
+        for (int j = 0; j < total; j++) {
+            int source = (int) order[j];
+            lx[j] = x[source];
+            ly[j] = y[source];
+            lvx[j] = vx[source];
+            lvy[j] = vy[source];
+        }
+        Snapshot snap = params.snapshot(msg.tickId(), new BoidsView(lx, ly, lvx, lvy), msg.sepW(), msg.aliW(), msg.cohW());
+
+        FlightEvents.VelocityPhase velocityEvent = new FlightEvents.VelocityPhase();
+        velocityEvent.begin();
+        long velocityStart = System.nanoTime();
+        for (int j = 0; j < total; j++) {
+            int source = (int) order[j];
+            if (source >= nOwned) continue;
+            FlockingKernel.SELECTED.steer(snap, j, lx[j], ly[j], lvx[j], lvy[j], steering);
+            owned.set(source, lx[j], ly[j], steering[0], steering[1]);
+        }
+        long velocityDone = System.nanoTime();
+        velocityEvent.commit(msg.tickId(), nOwned);
+        FlightEvents.PositionPhase positionEvent = new FlightEvents.PositionPhase();
+        positionEvent.begin();
+        for (int i = 0; i < nOwned; i++) {
+            owned.set(i,
+                    BoidRules.move(owned.x(i), owned.vx(i), bounds.minX(), bounds.maxX(), bounds.width()),
+                    BoidRules.move(owned.y(i), owned.vy(i), bounds.minY(), bounds.maxY(), bounds.height()),
+                    owned.vx(i), owned.vy(i));
+        }
+        positionEvent.commit(msg.tickId(), nOwned);
+        Metrics.VELOCITY_PHASE.record(velocityDone - velocityStart);
+        Metrics.POSITION_PHASE.record(System.nanoTime() - velocityDone);
+        Metrics.messagesSent(1 + neighbours.length);
+        coordinator.tell(new RegionStepped(msg.tickId(), region, owned.toSet(), WireMetrics.takeUnreported()), getSelf());
+        handOver(msg.tickId());
+    }
+
+    /*
+     * Boids move by at most maxSpeed, far less than a cell, in a tick:
+     * the new owner of a boid is always a neighbouring region.
+     */
+    private void handOver(long tick) {
+        BoidBuffer kept = new BoidBuffer(owned.size());
+        BoidBuffer[] leaving = new BoidBuffer[neighbours.length];
+        for (int n = 0; n < neighbours.length; n++) {
+            leaving[n] = new BoidBuffer();
+        }
+        for (int i = 0; i < owned.size(); i++) {
+            int owner = layout.owner(owned.x(i), owned.y(i));
+            BoidBuffer target = owner == region ? kept : leaving[indexOf(owner)];
+            target.add(owned.id(i), owned.x(i), owned.y(i), owned.vx(i), owned.vy(i));
+        }
+        owned = kept;
+        for (int n = 0; n < neighbours.length; n++) {
+            regions.get(neighbours[n]).tell(new Handover(tick, region, leaving[n].toSet()), getSelf());
+        }
+    }
+
+    private int indexOf(int neighbour) {
+        for (int n = 0; n < neighbours.length; n++) {
+            if (neighbours[n] == neighbour) return n;
+        }
+        throw new IllegalStateException("Region " + neighbour + " is not a neighbour of region " + region);
+    }
+}
@@ -0,0 +1,144 @@
+package pcd.ass01;
+
+import akka.actor.*;
+import akka.cluster.Cluster;
+import akka.dispatch.RequiresMessageQueue;
+import akka.cluster.Member;
+import akka.cluster.MemberStatus;
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+/**
+ *
+ * Parent of the region actors of a RegionEngine. It only starts the
+ * ticks and gathers the boids reported by the regions in a frame;
+ * the regions exchange halos and boids among themselves.
+ * When distributed, the regions are created round-robin by the
+ * RegionHostActors of the worker nodes of the cluster, and steps wait
+ * until all of them have been created.
+ *
+ */
+public class RegionCoordinatorActor extends AbstractActor implements RequiresMessageQueue<MeteredMailbox.MeteredSemantics> {
+
+    private final ActorRef[] regions;
+    private final BoidStore store;
+    private int missingRegions;
+
+    private ActorRef requester;
+    private RunStep waitingStep;
+    private long currentTick = -1;
+    private int pendingRegions = 0;
+    private long tickBytes;
+
+    public RegionCoordinatorActor(WorldParams params, int nRegions, BoidsView initial, boolean distributed) {
+        RegionLayout layout = new RegionLayout(params, nRegions);
+        this.store = new BoidStore(initial.size());
+        this.regions = new ActorRef[layout.regions()];
+        BoidBuffer[] boids = new BoidBuffer[layout.regions()];
+        for (int r = 0; r < boids.length; r++) {
+            boids[r] = new BoidBuffer();
+        }
+        for (int i = 0; i < initial.size(); i++) {
+            store.set(i, initial.x(i), initial.y(i), initial.vx(i), initial.vy(i));
+            boids[layout.owner(initial.x(i), initial.y(i))].add(i, initial.x(i), initial.y(i), initial.vx(i), initial.vy(i));
+        }
+
+        List<ActorSelection> hosts = distributed ? workerHosts() : List.of();
+        if (distributed && hosts.isEmpty()) {
+            log("No worker nodes in the cluster, running the regions locally");
+        }
+        missingRegions = regions.length;
+        for (int r = 0; r < regions.length; r++) {
+            if (hosts.isEmpty()) {
+                regions[r] = getContext().actorOf(Props.create(RegionActor.class, r, params, layout, boids[r].toSet()));
+                missingRegions--;
+            } else {
+                hosts.get(r % hosts.size()).tell(new CreateRegion(r, nRegions, params, boids[r].toSet()), getSelf());
+            }
+        }
+        log("Split the world in " + layout + (hosts.isEmpty() ? "" : " over " + hosts.size() + " worker nodes"));
+        if (missingRegions == 0) {
+            shareRegionRefs();
+        }
+    }
+
+    private List<ActorSelection> workerHosts() {
+        Iterable<Member> members = Cluster.get(getContext().getSystem()).state().getMembers();
+        return StreamSupport.stream(members.spliterator(), false)
+                .filter(m -> m.status() == MemberStatus.up() && m.hasRole(ClusterNode.WORKER_ROLE))
+                .map(m -> getContext().actorSelection(m.address() + "/user/" + RegionHostActor.NAME))
+                .toList();
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(RegionCreated.class, this::onRegionCreated)
+                .match(RunStep.class, this::onRunStep)
+                .match(RegionStepped.class, this::onRegionStepped)
+                .build();
+    }
+
+    private void onRegionCreated(RegionCreated msg) {
+        if (regions[msg.region()] != null) return;
+        regions[msg.region()] = msg.ref();
+        missingRegions--;
+        if (missingRegions == 0) {
+            shareRegionRefs();
+            if (waitingStep != null) {
+                startStep(waitingStep);
+                waitingStep = null;
+            }
+        }
+    }
+
+    private void shareRegionRefs() {
+        RegionRefs refs = new RegionRefs(List.copyOf(Arrays.asList(regions)));
+        for (ActorRef region : regions) {
+            region.tell(refs, getSelf());
+        }
+    }
+
+    private void onRunStep(RunStep msg) {
+        requester = getSender();
+        if (missingRegions > 0) {
+            waitingStep = msg;
+        } else {
+            startStep(msg);
+        }
+    }
+
+    private void startStep(RunStep msg) {
+        currentTick = msg.tickId();
+        pendingRegions = regions.length;
+        tickBytes = 0;
+        RegionStep step = new RegionStep(currentTick, msg.sepW(), msg.aliW(), msg.cohW());
+        Metrics.messagesSent(regions.length);
+        for (ActorRef region : regions) {
+            region.tell(step, getSelf());
+        }
+    }
+
+    private void onRegionStepped(RegionStepped msg) {
+        if (pendingRegions == 0 || msg.tickId() != currentTick) return;
+        BoidSet boids = msg.boids();
+        for (int i = 0; i < boids.size(); i++) {
+            store.set(boids.ids()[i], boids.x()[i], boids.y()[i], boids.vx()[i], boids.vy()[i]);
+        }
+        tickBytes += msg.wireBytes();
+        pendingRegions--;
+        if (pendingRegions == 0) {
+            WireMetrics.tickCompleted(tickBytes + WireMetrics.takeUnreported());
+            Metrics.messagesSent(1);
+            requester.tell(new StepCompleted(currentTick, store.view()), getSelf());
+        }
+    }
+
+    private void log(String msg) {
+        System.out.println("[RegionCoordinatorActor] " + msg);
+    }
+}
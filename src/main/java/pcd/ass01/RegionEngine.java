@@ -0,0 +1,28 @@
+package pcd.ass01;
+
+import akka.actor.ActorRefFactory;
+import akka.actor.Props;
+
+/**
+ *
+ * ActorEngine with the world split in spatial regions, one actor each.
+ * A region receives only the halos of its neighbours instead of the
+ * whole flock, so the data per actor and tick no longer grows with N.
+ * nWorkers is the number of regions. When distributed, the regions run
+ * on the worker nodes of the Akka Cluster of the actor system.
+ *
+ */
+public class RegionEngine extends ActorEngine {
+
+    private final boolean distributed;
+
+    public RegionEngine(ActorRefFactory context, WorldParams params, int nWorkers, boolean distributed) {
+        super(context, params, nWorkers);
+        this.distributed = distributed;
+    }
+
+    @Override
+    protected Props coordinatorProps(BoidsView initial) {
+        return Props.create(RegionCoordinatorActor.class, params, Math.max(1, nWorkers), initial, distributed);
+    }
+}
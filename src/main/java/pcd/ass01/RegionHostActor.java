@@ -0,0 +1,59 @@
+package pcd.ass01;
+
+import akka.actor.*;
+import akka.cluster.Cluster;
+import akka.cluster.ClusterEvent;
+import akka.cluster.ClusterEvent.MemberRemoved;
+import pcd.ass01.SimulationMessages.*;
+
+/**
+ *
+ * Started as /user/regionHost on the worker nodes of a cluster: creates the
+ * region actors requested by the coordinator of a distributed RegionEngine.
+ * When the world node leaves the cluster the worker shuts down as well.
+ *
+ */
+public class RegionHostActor extends AbstractActor {
+
+    public static final String NAME = "regionHost";
+
+    private final Cluster cluster = Cluster.get(getContext().getSystem());
+
+    @Override
+    public void preStart() {
+        cluster.subscribe(getSelf(), ClusterEvent.initialStateAsEvents(), MemberRemoved.class);
+    }
+
+    @Override
+    public void postStop() {
+        cluster.unsubscribe(getSelf());
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(CreateRegion.class, this::onCreateRegion)
+                .match(MemberRemoved.class, this::onMemberRemoved)
+                .matchAny(msg -> {})
+                .build();
+    }
+
+    private void onCreateRegion(CreateRegion msg) {
+        RegionLayout layout = new RegionLayout(msg.params(), msg.nRegions());
+        ActorRef region = getContext().actorOf(Props.create(RegionActor.class,
+                msg.region(), msg.params(), layout, msg.boids()));
+        log("Hosting region " + msg.region() + " with " + msg.boids().size() + " boids");
+        getSender().tell(new RegionCreated(msg.region(), region), getSelf());
+    }
+
+    private void onMemberRemoved(MemberRemoved msg) {
+        if (msg.member().hasRole(ClusterNode.WORLD_ROLE)) {
+            log("World node left the cluster, shutting down");
+            getContext().getSystem().terminate();
+        }
+    }
+
+    private void log(String msg) {
+        System.out.println("[RegionHostActor] " + msg);
+    }
+}
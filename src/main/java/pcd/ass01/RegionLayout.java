@@ -0,0 +1,82 @@
+package pcd.ass01;
+
+import java.util.stream.IntStream;
+
+/**
+ *
+ * Split of the world in tilesX x tilesY rectangular regions, made of whole
+ * cells of the SpatialGrid of the world: a boid belongs to the region of
+ * its grid cell. Regions are numbered row by row.
+ *
+ */
+final class RegionLayout {
+
+    private final SpatialGrid cells;
+    private final int tilesX, tilesY;
+    private final double minX, minY, cellWidth, cellHeight, halo;
+
+    RegionLayout(WorldParams params, int nRegions) {
+        /* an empty grid of the world, just for its cell geometry */
+        this.cells = params.grid(new BoidsView(new double[0], new double[0], new double[0], new double[0]));
+        int n = Math.max(1, nRegions);
+        int rows = 1;
+        for (int d = 1; d * d <= n; d++) {
+            if (n % d == 0) rows = d;
+        }
+        this.tilesX = Math.min(cells.cols(), n / rows);
+        this.tilesY = Math.min(cells.rows(), rows);
+        this.minX = -params.width() / 2;
+        this.minY = -params.height() / 2;
+        this.cellWidth = params.width() / cells.cols();
+        this.cellHeight = params.height() / cells.rows();
+        this.halo = params.perceptionRadius();
+    }
+
+    int regions() {
+        return tilesX * tilesY;
+    }
+
+    int owner(double x, double y) {
+        int tx = (int) ((long) cells.cellX(x) * tilesX / cells.cols());
+        int ty = (int) ((long) cells.cellY(y) * tilesY / cells.rows());
+        return tx + tilesX * ty;
+    }
+
+    /* first cell of the tile with the given index along an axis */
+    private static int firstCell(int tile, int tiles, int cells) {
+        return (int) (((long) tile * cells + tiles - 1) / tiles);
+    }
+
+    /**
+     * Whether a boid at (x, y), outside the region, may be within the perception
+     * radius of one of the boids of the region: neighbours are searched without
+     * wrapping around the edges, so neither is the halo.
+     */
+    boolean inHalo(int region, double x, double y) {
+        int tx = region % tilesX, ty = region / tilesX;
+        double left = minX + firstCell(tx, tilesX, cells.cols()) * cellWidth;
+        double right = minX + firstCell(tx + 1, tilesX, cells.cols()) * cellWidth;
+        double bottom = minY + firstCell(ty, tilesY, cells.rows()) * cellHeight;
+        double top = minY + firstCell(ty + 1, tilesY, cells.rows()) * cellHeight;
+        return x >= left - halo && x <= right + halo && y >= bottom - halo && y <= top + halo;
+    }
+
+    /**
+     * Distinct regions around the given one, including the ones across the
+     * wrap-around edges, where boids can move to in a tick.
+     */
+    int[] neighbours(int region) {
+        int tx = region % tilesX, ty = region / tilesX;
+        return IntStream.rangeClosed(-1, 1)
+                .flatMap(dy -> IntStream.rangeClosed(-1, 1)
+                        .map(dx -> Math.floorMod(tx + dx, tilesX) + tilesX * Math.floorMod(ty + dy, tilesY)))
+                .filter(r -> r != region)
+                .distinct()
+                .toArray();
+    }
+
+    @Override
+    public String toString() {
+        return tilesX + "x" + tilesY + " regions";
+    }
+}
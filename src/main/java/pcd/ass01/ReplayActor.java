@@ -0,0 +1,142 @@
+package pcd.ass01;
+
+import akka.actor.*;
+import pcd.ass01.SimulationMessages.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ *
+ * Takes the place of GuardianActor and WorldActor in replay mode: feeds the
+ * view with the frames of a TrajectoryFile, with no simulation running.
+ * A timer fires every tickMs and moves the replay forward by speed ticks,
+ * so any speed can be shown at the frame rate of the view; the replay
+ * pauses at the last tick and starts again from the first one when resumed.
+ * SeekReplay jumps to any recorded tick.
+ *
+ */
+public class ReplayActor extends AbstractActor {
+
+    private final Path path;
+    private final long tickMs;
+    private final double speed;
+    private TrajectoryFile file;
+    private Optional<ActorRef> renderer = Optional.empty();
+    private Optional<Cancellable> timer = Optional.empty();
+    private boolean running = false;
+    /* current slot, fractional at speeds that are not whole numbers */
+    private double position;
+
+    public ReplayActor(Path path, long tickMs, double speed) {
+        this.path = path;
+        this.tickMs = tickMs;
+        this.speed = speed;
+    }
+
+    @Override
+    public void preStart() throws IOException {
+        file = TrajectoryFile.open(path);
+        log("Replaying " + file.ticks() + " ticks of " + file.boids() + " boids from " + path);
+    }
+
+    @Override
+    public void postStop() throws IOException {
+        stopTimer();
+        if (file != null) file.close();
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(StartSimulation.class, this::onStart)
+                .match(TickGuardian.class, msg -> advance())
+                .match(SeekReplay.class, this::onSeek)
+                .match(SuspendResumeSimulation.class, msg -> setRunning(!running))
+                .match(StopSimulation.class, this::onStop)
+                .match(StopApplication.class, this::onStopApplication)
+                .match(ViewActorAttachment.class, msg -> renderer = Optional.of(msg.view()))
+                .match(SeparationChange.class, msg -> {})
+                .match(CohesionChange.class, msg -> {})
+                .match(AlignmentChange.class, msg -> {})
+                .match(SaveCheckpoint.class, msg -> log("No checkpoints in replay mode"))
+                .match(RestoreCheckpoint.class, msg -> log("No checkpoints in replay mode"))
+                .build();
+    }
+
+    private void onStart(StartSimulation msg) throws IOException {
+        if (file.ticks() == 0) {
+            log("Nothing to replay");
+            return;
+        }
+        position = 0;
+        WorldReady ready = new WorldReady(file.read(0));
+        renderer.ifPresent(x -> x.tell(ready, getSelf()));
+        renderer.ifPresent(x -> x.tell(new ReplayReady(file.tickId(0), file.tickId(file.ticks() - 1)), getSelf()));
+        running = true;
+        startTimer();
+    }
+
+    private void onSeek(SeekReplay msg) throws IOException {
+        if (file.ticks() == 0) return;
+        position = file.slotOf(msg.tickId());
+        render((int) position);
+    }
+
+    private void onStop(StopSimulation msg) {
+        running = false;
+        stopTimer();
+        renderer.ifPresent(x -> x.tell(msg, getSelf()));
+    }
+
+    private void onStopApplication(StopApplication msg) {
+        getContext().stop(self());
+        System.exit(0);
+    }
+
+    private void advance() throws IOException {
+        if (!running) return;
+        int last = file.ticks() - 1;
+        position = Math.min(last, position + speed);
+        render((int) position);
+        if ((int) position == last) {
+            setRunning(false);
+        }
+    }
+
+    private void setRunning(boolean running) {
+        if (running == this.running) return;
+        this.running = running;
+        if (running) {
+            if ((int) position == file.ticks() - 1) position = 0;
+            renderer.ifPresent(x -> x.tell(new ResumeSimulation(), getSelf()));
+            startTimer();
+        } else {
+            stopTimer();
+            renderer.ifPresent(x -> x.tell(new PauseSimulation(), getSelf()));
+        }
+    }
+
+    private void render(int slot) throws IOException {
+        RenderFrame frame = new RenderFrame(file.tickId(slot), file.read(slot));
+        renderer.ifPresent(x -> x.tell(frame, getSelf()));
+    }
+
+    private void startTimer() {
+        stopTimer();
+        Duration period = Duration.ofMillis(Math.max(1, tickMs));
+        timer = Optional.of(getContext().getSystem().scheduler().scheduleAtFixedRate(
+                period, period, getSelf(), new TickGuardian(), getContext().getSystem().dispatcher(), getSelf()));
+    }
+
+    private void stopTimer() {
+        timer.ifPresent(Cancellable::cancel);
+        timer = Optional.empty();
+    }
+
+    private void log(String msg) {
+        System.out.println("[ReplayActor] " + msg);
+    }
+}
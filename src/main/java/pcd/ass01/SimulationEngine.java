@@ -0,0 +1,40 @@
+package pcd.ass01;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ *
+ * Computes the evolution of the flock on behalf of WorldActor.
+ * Implementations differ only in how a step is spread over the
+ * available cores; all of them apply the rules in BoidRules.
+ *
+ */
+public interface SimulationEngine {
+
+    /** Loads the initial state of the flock; called before any step. */
+    void start(BoidsView initial);
+
+    /**
+     * Advances the flock by one tick. The returned stage completes,
+     * possibly on another thread, with the state at the end of the tick.
+     * A new step is requested only after the previous one completed.
+     */
+    CompletionStage<BoidsView> step(long tickId);
+
+    /** State at the end of the last completed step. */
+    BoidsView state();
+
+    /** New weights, used from the next step on. */
+    void setWeights(double sepW, double aliW, double cohW);
+
+    /**
+     * The simulation has been suspended: no step is requested until resume.
+     * Engines owning threads can park them meanwhile.
+     */
+    default void suspend() {}
+
+    default void resume() {}
+
+    /** Releases the resources of the engine; no step is requested afterwards. */
+    void stop();
+}
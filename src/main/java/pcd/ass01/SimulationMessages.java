@@ -1,7 +1,6 @@
 package pcd.ass01;
 
 import akka.actor.*;
-import pcd.ass01.BoidActor.BoidState;
 
 import java.util.List;
 
@@ -11,11 +10,17 @@ public class SimulationMessages {
 
     public interface Command {}
     public static record StartSimulation(
-            int nBoids
-    ) implements Command {}
+            int nBoids,
+            long seed,
+            FlockGenerator.Layout layout
+    ) implements Command {
+        public StartSimulation(int nBoids) {
+            this(nBoids, System.nanoTime(), FlockGenerator.Layout.UNIFORM);
+        }
+    }
 
     public static record WorldReady(
-            List<BoidState> states
+            BoidsView boids
     ) implements Command {}
 
     public static record TickGuardian() implements Command {}
@@ -26,20 +31,87 @@ public class SimulationMessages {
     public static record StopSimulation() implements Command {}
     public static record StopApplication() implements Command {}
 
-    public static record Tick(
+    public static record SaveCheckpoint(String path) implements Command {}
+    /** Replaces the running simulation, if any, with the one in the checkpoint. */
+    public static record RestoreCheckpoint(String path) implements Command {}
+
+    /**
+     * Reply to a RestoreCheckpoint that replaced a simulation: unlike WorldReady,
+     * the restored one stays paused or running as the replaced one was.
+     */
+    public static record CheckpointRestored(long tickId, BoidsView boids) implements Command {}
+
+    public static record Bounds(
            double width, double height, double minX, double maxX, double minY, double maxY
-    ) implements Command {}
+    ) {}
 
     public static record Snapshot(
             long tickId,
-            List<BoidState> states,
+            SpatialGrid grid,
             double sepW, double aliW, double cohW,
             double perceptionRadius, double avoidRadius, double maxSpeed
     ) implements Command {}
 
-    public static record BoidUpdate(int id, P2d pos, V2d vel) implements Command {}
+    public static record Step(
+            Snapshot snapshot,
+            Bounds bounds
+    ) implements Command {}
+
+    /** Step of the boids [from, to), the given slice of a LoadBalancer. */
+    public static record SliceStep(
+            Snapshot snapshot,
+            Bounds bounds,
+            int slice, int from, int to
+    ) implements Command {}
+
+    public static record BoidUpdate(long tickId, int id, double x, double y, double vx, double vy) implements Command {}
+
+    /** Reply to a SliceStep, with the time spent on the velocities of the slice. */
+    public static record BoidBatchUpdate(
+            long tickId, int slice, int from, double[] x, double[] y, double[] vx, double[] vy, long nanos
+    ) implements Command {}
+
+    /** Boids with their ids, e.g. the ones owned by a region. */
+    public static record BoidSet(int[] ids, double[] x, double[] y, double[] vx, double[] vy) {
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    public static record CreateRegion(int region, int nRegions, WorldParams params, BoidSet boids) implements Command {}
+
+    public static record RegionCreated(int region, ActorRef ref) implements Command {}
+
+    public static record RegionRefs(List<ActorRef> regions) implements Command {}
+
+    public static record RegionStep(long tickId, double sepW, double aliW, double cohW) implements Command {}
+
+    public static record Halo(long tickId, int from, BoidSet boids) implements Command {}
+
+    public static record Handover(long tickId, int from, BoidSet boids) implements Command {}
+
+    /** wireBytes: bytes serialized by the JVM of the region since its last report, see WireMetrics. */
+    public static record RegionStepped(long tickId, int region, BoidSet boids, long wireBytes) implements Command {}
+
+    public static record RunStep(long tickId, double sepW, double aliW, double cohW) implements Command {}
+
+    public static record StepCompleted(long tickId, BoidsView boids) implements Command {}
+
+    /** A step that completed exceptionally, tagged like StepCompleted. */
+    public static record StepFailed(long tickId, Throwable cause) implements Command {}
+
+    public static record RenderFrame(long tickId, BoidsView boids) implements Command {}
+
+    public static record TickRateReport(double targetRate, double achievedRate, int skippedTicks) implements Command {
+        public boolean saturated() {
+            return achievedRate < targetRate * 0.95;
+        }
+    }
+
+    /** Sent by a ReplayActor to the view with the range of ticks of its file. */
+    public static record ReplayReady(long firstTick, long lastTick) implements Command {}
 
-    public static record RenderFrame(long tickId, List<BoidState> states) implements Command {}
+    public static record SeekReplay(long tickId) implements Command {}
 
     public static record SeparationChange(double value) implements Command {}
 
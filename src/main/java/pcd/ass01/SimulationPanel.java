@@ -4,22 +4,28 @@ package pcd.ass01;
 import javax.swing.*;
 import java.awt.*;
 import java.util.Hashtable;
-import java.util.List;
+import java.util.Optional;
 
 import pcd.ass01.SimulationMessages.*;
 
 public class SimulationPanel extends JPanel {
     private final BoidsPanel boidsPanel;
     private final JSlider cohesionSlider, separationSlider, alignmentSlider;
-    private final JButton suspendResumeButton, stopButton;
+    private final JButton suspendResumeButton, stopButton, checkpointButton, restoreButton;
+    private final ViewActor view;
+    private final JPanel controlPanel;
+    private JSlider replaySlider;
+    /* set while the replay slider follows the frames, to tell its moves from the user's */
+    private boolean followingReplay = false;
 
-    public SimulationPanel(ViewActor view, double width, int nBoids, List<BoidActor.BoidState> initialStates) {
+    public SimulationPanel(ViewActor view, double width, int nBoids, BoidsView initialBoids) {
         setLayout(new BorderLayout());
+        this.view = view;
 
-        boidsPanel = new BoidsPanel(view, width, nBoids, initialStates);
+        boidsPanel = new BoidsPanel(view, width, nBoids, initialBoids);
         add(boidsPanel, BorderLayout.CENTER);
 
-        JPanel controlPanel = new JPanel();
+        controlPanel = new JPanel();
         controlPanel.setLayout(new BoxLayout(controlPanel, BoxLayout.Y_AXIS));
 
         JPanel slidersPanel = new JPanel();
@@ -40,12 +46,32 @@ public class SimulationPanel extends JPanel {
         stopButton = new JButton("Stop");
         buttonPanel.add(suspendResumeButton);
         buttonPanel.add(stopButton);
+        checkpointButton = new JButton("Checkpoint");
+        restoreButton = new JButton("Restore");
+        buttonPanel.add(checkpointButton);
+        buttonPanel.add(restoreButton);
+        JCheckBox densityCheckBox = new JCheckBox("Density map");
+        buttonPanel.add(densityCheckBox);
+        JCheckBox metricsCheckBox = new JCheckBox("Metrics");
+        buttonPanel.add(metricsCheckBox);
         controlPanel.add(buttonPanel);
 
         add(controlPanel, BorderLayout.SOUTH);
 
         suspendResumeButton.addActionListener(e -> view.toggleSuspendResume());
         stopButton.addActionListener(e -> view.stopSimulation());
+        checkpointButton.addActionListener(e -> chooseFile(true).ifPresent(view::saveCheckpoint));
+        restoreButton.addActionListener(e -> chooseFile(false).ifPresent(view::restoreCheckpoint));
+        densityCheckBox.addActionListener(e -> boidsPanel.setDensityMode(densityCheckBox.isSelected()));
+        metricsCheckBox.addActionListener(e -> boidsPanel.setMetricsOverlay(metricsCheckBox.isSelected()));
+    }
+
+    private Optional<String> chooseFile(boolean save) {
+        JFileChooser chooser = new JFileChooser();
+        int result = save ? chooser.showSaveDialog(this) : chooser.showOpenDialog(this);
+        return result == JFileChooser.APPROVE_OPTION
+                ? Optional.of(chooser.getSelectedFile().getPath())
+                : Optional.empty();
     }
 
     private JSlider makeSlider(String name, ViewActor view) {
@@ -64,10 +90,33 @@ public class SimulationPanel extends JPanel {
         return slider;
     }
 
-    public void update(int frameRate, RenderFrame msg) {
+    public void update(int frameRate, long droppedFrames, RenderFrame msg, long receivedNanos) {
         boidsPanel.setFrameRate(frameRate);
-        boidsPanel.setState(msg.states());
+        boidsPanel.setDroppedFrames(droppedFrames);
+        boidsPanel.setState(msg.boids(), msg.tickId(), receivedNanos);
         boidsPanel.repaint();
+        if (replaySlider != null) {
+            followingReplay = true;
+            replaySlider.setValue((int) msg.tickId());
+            followingReplay = false;
+        }
+    }
+
+    /** Adds a slider to seek the ticks of a replay. */
+    public void showReplayControls(long firstTick, long lastTick) {
+        replaySlider = new JSlider(JSlider.HORIZONTAL, (int) firstTick, (int) lastTick, (int) firstTick);
+        replaySlider.addChangeListener(e -> {
+            if (!followingReplay) view.seekReplay(replaySlider.getValue());
+        });
+        JPanel replayPanel = new JPanel();
+        replayPanel.add(new JLabel("Tick"));
+        replayPanel.add(replaySlider);
+        controlPanel.add(replayPanel, 0);
+        revalidate();
+    }
+
+    public void updateTickRate(TickRateReport msg) {
+        boidsPanel.setTickRate(msg);
     }
 
     public void updateSuspendResumeButtonText(String text) {
@@ -0,0 +1,176 @@
+package pcd.ass01;
+
+/**
+ *
+ * Uniform grid over the simulation bounds, used to look up the boids
+ * close to a given position without scanning the whole flock.
+ * Boid ids are stored bucketed by cell (counting sort), so the boids of
+ * a cell, and of a row of adjacent cells, are contiguous; their state is
+ * copied in the same order, so that scans over neighbouring cells read
+ * memory sequentially. Cells are at least as large as the perception
+ * radius, hence every neighbour of a boid lies in its 3x3 block of cells.
+ * Instances are immutable once built and can be shared between actors.
+ *
+ */
+public final class SpatialGrid {
+
+    private final double minX, minY;
+    private final double cellWidth, cellHeight;
+    private final int cols, rows;
+    private final int[] cellStart;
+    private final int[] ids;
+    private final double[] x, y, vx, vy;
+    private final BoidsView boids;
+
+    private SpatialGrid(double minX, double minY, double cellWidth, double cellHeight,
+                        int cols, int rows, int[] cellStart, int[] ids,
+                        double[] x, double[] y, double[] vx, double[] vy, BoidsView boids) {
+        this.minX = minX;
+        this.minY = minY;
+        this.cellWidth = cellWidth;
+        this.cellHeight = cellHeight;
+        this.cols = cols;
+        this.rows = rows;
+        this.cellStart = cellStart;
+        this.ids = ids;
+        this.x = x;
+        this.y = y;
+        this.vx = vx;
+        this.vy = vy;
+        this.boids = boids;
+    }
+
+    /**
+     * Buckets the given boids over the area [minX, minX + width) x [minY, minY + height),
+     * using cells whose sides are never smaller than minCellSize.
+     */
+    public static SpatialGrid build(BoidsView boids, double minX, double minY,
+                                    double width, double height, double minCellSize) {
+        return build(boids, minX, minY, width, height, minCellSize, null);
+    }
+
+    /**
+     * As above, for boids stored out of id order (see MortonLayout): slotOf
+     * gives the index in boids of each id, and the boids of each cell are
+     * stored in id order, as if the flock were in id order. Ids in the grid
+     * are still indexes in boids.
+     */
+    public static SpatialGrid build(BoidsView boids, double minX, double minY,
+                                    double width, double height, double minCellSize, int[] slotOf) {
+        int cols = Math.max(1, (int) (width / minCellSize));
+        int rows = Math.max(1, (int) (height / minCellSize));
+        double cellWidth = width / cols;
+        double cellHeight = height / rows;
+
+        int n = boids.size();
+        int[] cellOf = new int[n];
+        int[] cellStart = new int[cols * rows + 1];
+        for (int i = 0; i < n; i++) {
+            int cell = cellIndex(boids.x(i), minX, cellWidth, cols) + cols * cellIndex(boids.y(i), minY, cellHeight, rows);
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        int[] next = new int[cols * rows];
+        System.arraycopy(cellStart, 0, next, 0, next.length);
+        int[] ids = new int[n];
+        for (int k = 0; k < n; k++) {
+            int i = slotOf == null ? k : slotOf[k];
+            ids[next[cellOf[i]]++] = i;
+        }
+        return restore(minX, minY, cellWidth, cellHeight, cols, rows, cellStart, ids, boids);
+    }
+
+    /**
+     * Grid with the given geometry and buckets, as returned by the accessors
+     * of another grid, e.g. one received from another JVM.
+     */
+    static SpatialGrid restore(double minX, double minY, double cellWidth, double cellHeight,
+                               int cols, int rows, int[] cellStart, int[] ids, BoidsView boids) {
+        int n = ids.length;
+        double[] x = new double[n], y = new double[n], vx = new double[n], vy = new double[n];
+        for (int pos = 0; pos < n; pos++) {
+            int id = ids[pos];
+            x[pos] = boids.x(id);
+            y[pos] = boids.y(id);
+            vx[pos] = boids.vx(id);
+            vy[pos] = boids.vy(id);
+        }
+        return new SpatialGrid(minX, minY, cellWidth, cellHeight, cols, rows, cellStart, ids, x, y, vx, vy, boids);
+    }
+
+    /*
+     * Positions are kept inside the bounds by the toroidal wrap of the boids,
+     * but a wrapped coordinate may still round onto the upper bound:
+     * indexes are clamped so that such boids land in the border cells.
+     */
+    private static int cellIndex(double coord, double min, double cellSize, int count) {
+        int idx = (int) Math.floor((coord - min) / cellSize);
+        return Math.min(count - 1, Math.max(0, idx));
+    }
+
+    public int cols() { return cols; }
+
+    public int rows() { return rows; }
+
+    public BoidsView boids() { return boids; }
+
+    public int cellX(double x) {
+        return cellIndex(x, minX, cellWidth, cols);
+    }
+
+    public int cellY(double y) {
+        return cellIndex(y, minY, cellHeight, rows);
+    }
+
+    /** First position (inclusive) of the boids of cell (cx, cy). */
+    public int cellStart(int cx, int cy) {
+        return cellStart[cx + cols * cy];
+    }
+
+    /** Last position (exclusive) of the boids of cell (cx, cy). */
+    public int cellEnd(int cx, int cy) {
+        return cellStart[cx + cols * cy + 1];
+    }
+
+    /** Id of the boid stored at the given position. */
+    public int id(int i) {
+        return ids[i];
+    }
+
+    /* State of the boid stored at the given position. */
+
+    public double x(int i) { return x[i]; }
+
+    public double y(int i) { return y[i]; }
+
+    public double vx(int i) { return vx[i]; }
+
+    public double vy(int i) { return vy[i]; }
+
+    /* Geometry and buckets, for restore. */
+
+    double minX() { return minX; }
+
+    double minY() { return minY; }
+
+    double cellWidth() { return cellWidth; }
+
+    double cellHeight() { return cellHeight; }
+
+    int[] cellStarts() { return cellStart; }
+
+    int[] ids() { return ids; }
+
+    /* Backing arrays, in grid order, for the kernels loading them in bulk: not to be modified. */
+
+    double[] xs() { return x; }
+
+    double[] ys() { return y; }
+
+    double[] vxs() { return vx; }
+
+    double[] vys() { return vy; }
+}
@@ -0,0 +1,123 @@
+package pcd.ass01;
+
+import akka.actor.*;
+import akka.dispatch.RequiresMessageQueue;
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * Parent of the boid actors of an ActorEngine: broadcasts a Step
+ * on each RunStep and answers with StepCompleted once all of them replied.
+ * Workers get instead a SliceStep each, with the slices of a LoadBalancer
+ * fed by the times in their replies.
+ *
+ */
+public class StepCoordinatorActor extends AbstractActor implements RequiresMessageQueue<MeteredMailbox.MeteredSemantics> {
+
+    private final WorldParams params;
+    private final List<ActorRef> boidActors = new ArrayList<>();
+    private final BoidStore store;
+    private LoadBalancer balancer;
+    private BoidsView currentView;
+
+    private ActorRef requester;
+    private long currentTick = -1;
+    private int pendingResponses = 0;
+
+    public StepCoordinatorActor(WorldParams params, int nWorkers, BoidsView initial) {
+        this.params = params;
+        this.currentView = initial;
+        this.store = new BoidStore(initial.size());
+        for (int i = 0; i < initial.size(); i++) {
+            store.set(i, initial.x(i), initial.y(i), initial.vx(i), initial.vy(i));
+        }
+        if (nWorkers > 0) {
+            spawnWorkers(nWorkers);
+        } else {
+            for (int i = 0; i < initial.size(); i++) {
+                boidActors.add(getContext().actorOf(Props.create(BoidActor.class,
+                        i, initial.x(i), initial.y(i), initial.vx(i), initial.vy(i))));
+            }
+        }
+    }
+
+    private void spawnWorkers(int nWorkers) {
+        int nBoids = currentView.size();
+        int workers = Math.min(nWorkers, nBoids);
+        if (workers == 0) return;
+        balancer = new LoadBalancer(nBoids, workers);
+        for (int w = 0; w < workers; w++) {
+            boidActors.add(getContext().actorOf(Props.create(BoidWorkerActor.class)));
+        }
+    }
+
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(RunStep.class, this::onRunStep)
+                .match(BoidUpdate.class, this::onBoidUpdate)
+                .match(BoidBatchUpdate.class, this::onBoidBatchUpdate)
+                .build();
+    }
+
+    private void onRunStep(RunStep msg) {
+        requester = getSender();
+        currentTick = msg.tickId();
+        Snapshot snap = params.snapshot(currentTick, currentView, msg.sepW(), msg.aliW(), msg.cohW());
+        Step step = new Step(snap, params.bounds());
+
+        pendingResponses = boidActors.size();
+        if (pendingResponses == 0) {
+            complete();
+            return;
+        }
+        Metrics.messagesSent(boidActors.size());
+        if (balancer != null) {
+            for (int w = 0; w < boidActors.size(); w++) {
+                boidActors.get(w).tell(new SliceStep(snap, step.bounds(), w, balancer.from(w), balancer.to(w)), getSelf());
+            }
+            return;
+        }
+        for (ActorRef boid : boidActors) {
+            boid.tell(step, getSelf());
+        }
+    }
+
+    /*
+     * Replies are tagged with the tick they answer: the ones of an older tick,
+     * e.g. after a step that timed out, are dropped.
+     */
+    private boolean isCurrent(long tickId) {
+        return pendingResponses > 0 && tickId == currentTick;
+    }
+
+    private void onBoidUpdate(BoidUpdate upd) {
+        if (!isCurrent(upd.tickId())) return;
+        store.set(upd.id(), upd.x(), upd.y(), upd.vx(), upd.vy());
+        onResponse();
+    }
+
+    private void onBoidBatchUpdate(BoidBatchUpdate upd) {
+        if (!isCurrent(upd.tickId())) return;
+        store.setRange(upd.from(), upd.x(), upd.y(), upd.vx(), upd.vy());
+        balancer.record(upd.slice(), upd.nanos());
+        onResponse();
+    }
+
+    private void onResponse() {
+        pendingResponses--;
+        if (pendingResponses == 0) {
+            complete();
+        }
+    }
+
+    private void complete() {
+        if (balancer != null) balancer.rebalance();
+        currentView = store.view();
+        Metrics.messagesSent(1);
+        requester.tell(new StepCompleted(currentTick, currentView), getSelf());
+    }
+}
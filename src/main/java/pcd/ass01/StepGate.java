@@ -0,0 +1,79 @@
+package pcd.ass01;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ *
+ * Monitor through which an engine hands steps to its worker threads.
+ * Workers park on a condition until a step newer than the last one
+ * they processed is opened and the gate is not paused, or until the
+ * gate is stopped.
+ *
+ */
+public final class StepGate {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private long step = 0;
+    private boolean paused = false;
+    private boolean stopped = false;
+
+    /** Opens a new step, waking up the parked workers. */
+    public void open() {
+        lock.lock();
+        try {
+            step++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a step after lastStep.
+     * @return the number of the step, or -1 once the gate is stopped
+     */
+    public long awaitStep(long lastStep) throws InterruptedException {
+        lock.lock();
+        try {
+            while (!stopped && (paused || step == lastStep)) {
+                changed.await();
+            }
+            return stopped ? -1 : step;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Keeps the workers parked, even if a new step is opened, until resumed. */
+    public void pause() {
+        lock.lock();
+        try {
+            paused = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void resume() {
+        lock.lock();
+        try {
+            paused = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ *
+ * Engine whose boids are split in groups, each one owned by a thread
+ * created by the subclass; the group boundaries are moved between steps
+ * by a LoadBalancer. For every step the threads go through
+ * velocity -> barrier -> position -> barrier, reading the current arrays
+ * and writing the next ones; the last thread to reach the second barrier
+ * swaps the buffers and completes the step.
+ * All the synchronisation goes through the StepGate and Barrier monitors.
+ * A worker or a barrier action that throws breaks the barriers, so that
+ * the other threads terminate, and fails the step; later steps fail at once.
+ *
+ */
+public abstract class ThreadedEngine implements SimulationEngine {
+
+    private final WorldParams params;
+    private final StepGate gate = new StepGate();
+    private Barrier velocityDone, stepDone;
+
+    private double[] x, y, vx, vy;
+    private double[] nextX, nextY, nextVx, nextVy;
+    /* order of the boids in the arrays, null when they are kept in id order */
+    private MortonLayout layout;
+    /* see FlockingKernel.forEngine */
+    private FlockingKernel kernel;
+    private LoadBalancer balancer;
+    private volatile Snapshot snapshot;
+    /* written by the barrier actions and by step(), between steps */
+    private long stepStart, velocityEnd;
+    private FlightEvents.VelocityPhase velocityEvent;
+    private FlightEvents.PositionPhase positionEvent;
+    private volatile CompletableFuture<BoidsView> pending;
+    /* set once a step failed, the threads are gone then */
+    private volatile Throwable failure;
+    private volatile BoidsView state;
+    private volatile double sepW, aliW, cohW;
+
+    protected ThreadedEngine(WorldParams params) {
+        this.params = params;
+    }
+
+    /** Number of groups the given flock is split in, one thread each. */
+    protected abstract int groupCount(int nBoids);
+
+    /** Creates and starts the thread running the given group. */
+    protected abstract Thread startWorker(Runnable group, String name);
+
+    @Override
+    public void start(BoidsView initial) {
+        int n = initial.size();
+        x = new double[n];
+        y = new double[n];
+        vx = new double[n];
+        vy = new double[n];
+        nextX = new double[n];
+        nextY = new double[n];
+        nextVx = new double[n];
+        nextVy = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = initial.x(i);
+            y[i] = initial.y(i);
+            vx[i] = initial.vx(i);
+            vy[i] = initial.vy(i);
+        }
+        state = initial;
+        layout = null;
+        if (MortonLayout.enabled()) {
+            layout = new MortonLayout(n);
+            layout.sort(params.grid(initial), x, y, vx, vy);
+        }
+        kernel = FlockingKernel.forEngine(n, params);
+
+        int groups = n == 0 ? 0 : Math.max(1, Math.min(n, groupCount(n)));
+        velocityDone = new Barrier(groups, this::completeVelocity);
+        stepDone = new Barrier(groups, this::completeStep);
+        balancer = new LoadBalancer(n, Math.max(1, groups));
+        for (int g = 0; g < groups; g++) {
+            int group = g;
+            startWorker(() -> runGroup(group), "boids-" + g);
+        }
+    }
+
+    @Override
+    public CompletionStage<BoidsView> step(long tickId) {
+        if (x.length == 0) {
+            return CompletableFuture.completedFuture(state);
+        }
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        pending = new CompletableFuture<>();
+        /* the current arrays are not written during the step, so they can back the snapshot */
+        snapshot = params.snapshot(tickId, new BoidsView(x, y, vx, vy),
+                layout == null ? null : layout.slotOf(), sepW, aliW, cohW);
+        kernel.prepare(snapshot);
+        velocityEvent = new FlightEvents.VelocityPhase();
+        velocityEvent.begin();
+        stepStart = System.nanoTime();
+        gate.open();
+        return pending;
+    }
+
+    private void runGroup(int group) {
+        double[] steering = new double[2];
+        Bounds bounds = params.bounds();
+        long step = 0;
+        try {
+            while ((step = gate.awaitStep(step)) >= 0) {
+                Snapshot snap = snapshot;
+                int from = balancer.from(group), to = balancer.to(group);
+                long start = LoadBalancer.now();
+                for (int i = from; i < to; i++) {
+                    kernel.steer(snap, i, x[i], y[i], vx[i], vy[i], steering);
+                    nextVx[i] = steering[0];
+                    nextVy[i] = steering[1];
+                }
+                balancer.record(group, LoadBalancer.now() - start);
+                if (!velocityDone.await()) return;
+
+                for (int i = from; i < to; i++) {
+                    nextX[i] = BoidRules.move(x[i], nextVx[i], bounds.minX(), bounds.maxX(), bounds.width());
+                    nextY[i] = BoidRules.move(y[i], nextVy[i], bounds.minY(), bounds.maxY(), bounds.height());
+                }
+                if (!stepDone.await()) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            fail(e);
+        }
+    }
+
+    private void fail(Throwable cause) {
+        failure = cause;
+        gate.stop();
+        velocityDone.breakBarrier();
+        stepDone.breakBarrier();
+        pending.completeExceptionally(cause);
+    }
+
+    private void completeVelocity() {
+        velocityEnd = System.nanoTime();
+        velocityEvent.commit(snapshot.tickId(), x.length);
+        positionEvent = new FlightEvents.PositionPhase();
+        positionEvent.begin();
+        Metrics.VELOCITY_PHASE.record(velocityEnd - stepStart);
+    }
+
+    /* barrier action: runs in the last thread of the step, while the others wait */
+    private void completeStep() {
+        positionEvent.commit(snapshot.tickId(), x.length);
+        Metrics.POSITION_PHASE.record(System.nanoTime() - velocityEnd);
+        balancer.rebalance();
+        double[] t;
+        t = x; x = nextX; nextX = t;
+        t = y; y = nextY; nextY = t;
+        t = vx; vx = nextVx; nextVx = t;
+        t = vy; vy = nextVy; nextVy = t;
+        if (layout == null) {
+            state = new BoidsView(x.clone(), y.clone(), vx.clone(), vy.clone());
+        } else {
+            state = layout.toIdOrder(x, y, vx, vy);
+            if (layout.update(snapshot.grid(), x, y, vx, vy) && kernel instanceof VerletLists lists) {
+                lists.invalidate();
+            }
+        }
+        pending.complete(state);
+    }
+
+    @Override
+    public BoidsView state() {
+        return state;
+    }
+
+    @Override
+    public void setWeights(double sepW, double aliW, double cohW) {
+        this.sepW = sepW;
+        this.aliW = aliW;
+        this.cohW = cohW;
+    }
+
+    @Override
+    public void suspend() {
+        gate.pause();
+    }
+
+    @Override
+    public void resume() {
+        gate.resume();
+    }
+
+    @Override
+    public void stop() {
+        gate.stop();
+        if (velocityDone != null) {
+            velocityDone.breakBarrier();
+            stepDone.breakBarrier();
+        }
+        CompletableFuture<BoidsView> step = pending;
+        if (step != null) {
+            step.completeExceptionally(new CancellationException("Engine stopped"));
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package pcd.ass01;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * Memory-mapped file of the states of a flock, one fixed-width record per tick.
+ * The header holds the number of boids, the capacity in ticks, the number of
+ * ticks written so far and the index of their tick ids; records follow, each
+ * with the x, y, vx and vy arrays of all the boids in id order, as little-endian
+ * doubles. Since records have a fixed width, the state of any tick is found
+ * by a binary search in the index and read in place, without scanning.
+ * Records are mapped in chunks of about CHUNK_BYTES, as a single mapping
+ * cannot exceed 2 GB.
+ *
+ */
+public final class TrajectoryFile implements Closeable {
+
+    private static final int MAGIC = 0x424f4944; // "BOID"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int COUNT_OFFSET = 16;
+    private static final long CHUNK_BYTES = 64L << 20;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int nBoids, capacity;
+    private final MappedByteBuffer header;
+    private final LongBuffer index;
+    private final long dataOffset, recordBytes;
+    private final int ticksPerChunk;
+    private final DoubleBuffer[] chunks;
+    private int count;
+
+    private TrajectoryFile(FileChannel channel, boolean writable, int nBoids, int capacity) throws IOException {
+        this.channel = channel;
+        this.writable = writable;
+        this.nBoids = nBoids;
+        this.capacity = capacity;
+        long headerBytes = HEADER_BYTES + 8L * capacity;
+        this.header = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, headerBytes);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        this.index = header.position(HEADER_BYTES).slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        this.dataOffset = headerBytes;
+        this.recordBytes = 32L * nBoids;
+        this.ticksPerChunk = (int) Math.max(1, Math.min(capacity, CHUNK_BYTES / Math.max(1, recordBytes)));
+        this.chunks = new DoubleBuffer[(capacity + ticksPerChunk - 1) / ticksPerChunk];
+    }
+
+    /** New file, replacing any existing one, for at most capacity ticks of nBoids boids. */
+    public static TrajectoryFile create(Path path, int nBoids, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        TrajectoryFile file = new TrajectoryFile(channel, true, nBoids, capacity);
+        file.header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, nBoids).putInt(12, capacity).putInt(COUNT_OFFSET, 0);
+        return file;
+    }
+
+    /** Existing file, for reading. */
+    public static TrajectoryFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not a trajectory file: " + path);
+        }
+        TrajectoryFile file = new TrajectoryFile(channel, false, header.getInt(8), header.getInt(12));
+        file.count = header.getInt(COUNT_OFFSET);
+        return file;
+    }
+
+    public int boids() { return nBoids; }
+
+    /** Number of ticks written. */
+    public int ticks() { return count; }
+
+    public boolean isFull() { return count == capacity; }
+
+    /** Id of the tick stored at the given slot, in [0, ticks()). */
+    public long tickId(int slot) {
+        return index.get(slot);
+    }
+
+    /** Slot of the first tick with an id not lower than tickId, clamped to the ticks written. */
+    public int slotOf(long tickId) {
+        int lo = 0, hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (index.get(mid) < tickId) lo = mid + 1; else hi = mid;
+        }
+        return Math.max(0, lo);
+    }
+
+    /**
+     * Appends the state of a tick, whose id must be higher than those already
+     * written; the tick count in the header is updated last.
+     */
+    public void append(long tickId, BoidsView boids) throws IOException {
+        if (!writable) throw new IllegalStateException("Trajectory file opened for reading");
+        if (isFull()) throw new IllegalStateException("Trajectory file full after " + capacity + " ticks");
+        if (boids.size() != nBoids) throw new IllegalArgumentException(boids.size() + " boids, expected " + nBoids);
+        DoubleBuffer chunk = chunk(count);
+        int base = recordStart(count);
+        for (int i = 0; i < nBoids; i++) {
+            chunk.put(base + i, boids.x(i));
+            chunk.put(base + nBoids + i, boids.y(i));
+            chunk.put(base + 2 * nBoids + i, boids.vx(i));
+            chunk.put(base + 3 * nBoids + i, boids.vy(i));
+        }
+        index.put(count, tickId);
+        count++;
+        header.putInt(COUNT_OFFSET, count);
+    }
+
+    /** State of the flock at the given slot, copied out of the file. */
+    public BoidsView read(int slot) throws IOException {
+        if (slot < 0 || slot >= count) throw new IndexOutOfBoundsException("Slot " + slot + " of " + count);
+        DoubleBuffer chunk = chunk(slot);
+        int base = recordStart(slot);
+        double[] x = new double[nBoids], y = new double[nBoids], vx = new double[nBoids], vy = new double[nBoids];
+        chunk.get(base, x);
+        chunk.get(base + nBoids, y);
+        chunk.get(base + 2 * nBoids, vx);
+        chunk.get(base + 3 * nBoids, vy);
+        return new BoidsView(x, y, vx, vy);
+    }
+
+    /* position, in doubles, of the record of the given slot in its chunk */
+    private int recordStart(int slot) {
+        return (int) ((slot % ticksPerChunk) * (recordBytes / 8));
+    }
+
+    private DoubleBuffer chunk(int slot) throws IOException {
+        int c = slot / ticksPerChunk;
+        if (chunks[c] == null) {
+            int ticks = Math.min(ticksPerChunk, capacity - c * ticksPerChunk);
+            MappedByteBuffer mapped = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    dataOffset + c * ticksPerChunk * recordBytes, ticks * recordBytes);
+            chunks[c] = mapped.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+        return chunks[c];
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,237 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.Arrays;
+
+/**
+ *
+ * Kernel that reuses the neighbours of each boid across ticks (Verlet lists).
+ * Lists hold the boids within perceptionRadius + skin when they are built, and
+ * at each tick only they are tested against the exact radii. They stay valid
+ * as long as no boid moved by more than skin/2 since the build, when all the
+ * lists are built again, lazily, a block of boids at a time.
+ * Boids wrapped around the borders since the build are the exception, as they
+ * jump to the opposite side: they are steered with the grid of the tick, and
+ * added to the boids around their new position through the grid too.
+ * Boids are referred to by their index in the snapshot, so the lists must be
+ * invalidated when the engine reorders its arrays.
+ * Results are those of the scalar kernel up to the order of the sums.
+ * Chosen with -Dpcd.boids.neighbours=verlet, with the skin in -Dpcd.boids.skin.
+ *
+ */
+public final class VerletLists implements FlockingKernel {
+
+    private static final int BLOCK_BITS = 8;
+
+    private final double skin;
+    private final double width, height;
+    private final Block[] blocks;
+    private final int n;
+
+    /* written by prepare, before the step; read by the threads of the step */
+    private double[] builtX, builtY;
+    private long epoch;
+    private int ticksSinceBuild;
+    private final boolean[] wrapped;
+    private int[] wrappedIds = new int[0];
+    private long[] extra = new long[0];
+    private int extraCount;
+
+    public VerletLists(int n, WorldParams params, double skin) {
+        this.n = n;
+        this.skin = skin;
+        this.width = params.width();
+        this.height = params.height();
+        this.wrapped = new boolean[n];
+        this.blocks = new Block[(n >> BLOCK_BITS) + 1];
+        for (int b = 0; b < blocks.length; b++) {
+            blocks[b] = new Block();
+        }
+    }
+
+    static double configuredSkin() {
+        return Double.parseDouble(System.getProperty("pcd.boids.skin", "20"));
+    }
+
+    /** Forces a build at the next tick, e.g. after the boids have been reordered. */
+    void invalidate() {
+        builtX = null;
+    }
+
+    /**
+     * Called once per tick, on a single thread, before the boids are steered
+     * with the given snapshot: decides whether the lists are still valid and
+     * finds the boids that wrapped around since they were built.
+     */
+    @Override
+    public void prepare(Snapshot snap) {
+        BoidsView boids = snap.grid().boids();
+        double limit = skin / 2;
+        double maxMoved = 0;
+        int nWrapped = 0;
+        if (builtX != null) {
+            for (int i = 0; i < n; i++) {
+                double dx = boids.x(i) - builtX[i];
+                double dy = boids.y(i) - builtY[i];
+                wrapped[i] = Math.abs(dx) > width / 2 || Math.abs(dy) > height / 2;
+                if (wrapped[i]) {
+                    nWrapped++;
+                    continue;
+                }
+                maxMoved = Math.max(maxMoved, dx*dx + dy*dy);
+            }
+        }
+        if (builtX == null || maxMoved > limit * limit) {
+            if (builtX != null) Metrics.NEIGHBOUR_REBUILD_INTERVAL.record(ticksSinceBuild);
+            builtX = new double[n];
+            builtY = new double[n];
+            for (int i = 0; i < n; i++) {
+                builtX[i] = boids.x(i);
+                builtY[i] = boids.y(i);
+            }
+            Arrays.fill(wrapped, false);
+            nWrapped = 0;
+            ticksSinceBuild = 0;
+            epoch++;
+        }
+        ticksSinceBuild++;
+        findExtraNeighbours(snap, nWrapped);
+    }
+
+    /*
+     * Pairs (boid, wrapped boid within its perception radius) for the boids
+     * that are not wrapped themselves, sorted by boid.
+     */
+    private void findExtraNeighbours(Snapshot snap, int nWrapped) {
+        extraCount = 0;
+        if (nWrapped == 0) return;
+        if (wrappedIds.length < nWrapped) wrappedIds = new int[nWrapped];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (wrapped[i]) wrappedIds[k++] = i;
+        }
+        SpatialGrid grid = snap.grid();
+        double r = snap.perceptionRadius();
+        for (int k = 0; k < nWrapped; k++) {
+            int w = wrappedIds[k];
+            double x = grid.boids().x(w), y = grid.boids().y(w);
+            int cx = grid.cellX(x), cy = grid.cellY(y);
+            int maxCx = Math.min(grid.cols() - 1, cx + 1);
+            for (int gy = Math.max(0, cy - 1); gy <= Math.min(grid.rows() - 1, cy + 1); gy++) {
+                int end = grid.cellEnd(maxCx, gy);
+                for (int pos = grid.cellStart(Math.max(0, cx - 1), gy); pos < end; pos++) {
+                    int other = grid.id(pos);
+                    if (wrapped[other]) continue;
+                    double dx = grid.x(pos) - x, dy = grid.y(pos) - y;
+                    if (Math.sqrt(dx*dx + dy*dy) < r) {
+                        if (extraCount == extra.length) extra = Arrays.copyOf(extra, Math.max(16, 2 * extra.length));
+                        extra[extraCount++] = (long) other << 32 | w;
+                    }
+                }
+            }
+        }
+        Arrays.sort(extra, 0, extraCount);
+    }
+
+    @Override
+    public void steer(Snapshot snap, int id, double x, double y, double vx, double vy, double[] out) {
+        if (wrapped[id]) {
+            BoidRules.steer(snap, id, x, y, vx, vy, out);
+            return;
+        }
+        Block block = blocks[id >> BLOCK_BITS];
+        if (block.epoch != epoch) build(block, id >> BLOCK_BITS, snap);
+        BoidsView boids = snap.grid().boids();
+        double perceptionRadius = snap.perceptionRadius();
+        double avoidRadius = snap.avoidRadius();
+
+        int nearby = 0, avoided = 0;
+        double sumVx = 0, sumVy = 0, sumX = 0, sumY = 0, sepDx = 0, sepDy = 0;
+        int local = id & ((1 << BLOCK_BITS) - 1);
+        int end = block.start[local + 1];
+        int extraPos = extraCount == 0 ? extraCount : firstExtra(id);
+        for (int k = block.start[local]; ; k++) {
+            int other;
+            if (k < end) {
+                other = block.neighbours[k];
+            } else if (extraPos < extraCount && (int) (extra[extraPos] >>> 32) == id) {
+                other = (int) extra[extraPos++];
+            } else {
+                break;
+            }
+            double ox = boids.x(other);
+            double oy = boids.y(other);
+            double dx = ox - x;
+            double dy = oy - y;
+            double distance = Math.sqrt(dx*dx + dy*dy);
+            if (distance < perceptionRadius) {
+                nearby++;
+                sumVx += boids.vx(other);
+                sumVy += boids.vy(other);
+                sumX += ox;
+                sumY += oy;
+                if (distance < avoidRadius) {
+                    sepDx += x - ox;
+                    sepDy += y - oy;
+                    avoided++;
+                }
+            }
+        }
+        BoidRules.applyRules(snap, x, y, vx, vy, nearby, avoided, sumVx, sumVy, sumX, sumY, sepDx, sepDy, out);
+    }
+
+    private int firstExtra(int id) {
+        int lo = 0, hi = extraCount;
+        long key = (long) id << 32;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (extra[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /*
+     * Builds the lists of a block from the grid of the current tick, which
+     * covers the list radius with as many rings of cells as needed.
+     */
+    private void build(Block block, int b, Snapshot snap) {
+        synchronized (block) {
+            if (block.epoch == epoch) return;
+            SpatialGrid grid = snap.grid();
+            double radius = snap.perceptionRadius() + skin;
+            int reachX = (int) Math.ceil(radius / grid.cellWidth());
+            int reachY = (int) Math.ceil(radius / grid.cellHeight());
+            int from = b << BLOCK_BITS, to = Math.min(n, from + (1 << BLOCK_BITS));
+            int[] start = new int[to - from + 1];
+            int[] neighbours = block.neighbours == null ? new int[1024] : block.neighbours;
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                start[i - from] = count;
+                double x = grid.boids().x(i), y = grid.boids().y(i);
+                int cx = grid.cellX(x), cy = grid.cellY(y);
+                int minCx = Math.max(0, cx - reachX), maxCx = Math.min(grid.cols() - 1, cx + reachX);
+                for (int gy = Math.max(0, cy - reachY); gy <= Math.min(grid.rows() - 1, cy + reachY); gy++) {
+                    int end = grid.cellEnd(maxCx, gy);
+                    for (int pos = grid.cellStart(minCx, gy); pos < end; pos++) {
+                        double dx = grid.x(pos) - x, dy = grid.y(pos) - y;
+                        if (grid.id(pos) != i && dx*dx + dy*dy < radius * radius) {
+                            if (count == neighbours.length) neighbours = Arrays.copyOf(neighbours, 2 * count);
+                            neighbours[count++] = grid.id(pos);
+                        }
+                    }
+                }
+            }
+            start[to - from] = count;
+            block.start = start;
+            block.neighbours = neighbours;
+            block.epoch = epoch;
+        }
+    }
+
+    /* lists of 2^BLOCK_BITS consecutive boids, in a single array */
+    private static final class Block {
+        volatile long epoch = -1;
+        int[] start;
+        int[] neighbours;
+    }
+}
@@ -1,17 +1,21 @@
 package pcd.ass01;
 
 import akka.actor.*;
+import akka.dispatch.RequiresMessageQueue;
 import pcd.ass01.SimulationMessages.*;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import java.awt.DisplayMode;
+import java.awt.GraphicsEnvironment;
 import java.awt.event.ActionEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
-public class ViewActor extends AbstractActor implements ChangeListener {
+public class ViewActor extends AbstractActor implements ChangeListener, RequiresMessageQueue<MeteredMailbox.MeteredSemantics> {
 
     private final ActorRef guardianActor;
 
@@ -21,11 +25,25 @@ public class ViewActor extends AbstractActor implements ChangeListener {
     private final int width, height;
     private double environmentWidth;
 
+    private static final int DEFAULT_REFRESH_RATE = 60;
+
     private boolean paused = false;
+    /* in replay mode frames only come on request, so they are painted even when paused */
+    private boolean replay = false;
     private int frameRate = 0;
     private long lastFrameTime = System.currentTimeMillis();
 
-    private Optional<Integer> nBoids = Optional.empty();
+    /*
+     * Frames are conflated: the actor only publishes the newest one and the
+     * EDT paints whatever is latest at the display refresh rate, so frames the
+     * EDT had no time for are dropped (and counted) instead of queued.
+     * Frames carry their arrival time, for the render latency. Frames dropped
+     * are released here, the ones painted by the panel when it paints the next.
+     */
+    private record PendingFrame(RenderFrame frame, long receivedNanos) {}
+    private final AtomicReference<PendingFrame> latestFrame = new AtomicReference<>();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private Timer repaintTimer;
 
     public ViewActor(ActorRef guardianActor, int width, int height, int environmentWidth) {
         this.guardianActor = guardianActor;
@@ -55,10 +73,13 @@ public class ViewActor extends AbstractActor implements ChangeListener {
     public Receive createReceive() {
         return receiveBuilder()
                 .match(WorldReady.class, this::onStartRendering)
+                .match(CheckpointRestored.class, this::onCheckpointRestored)
                 .match(PauseSimulation.class, this::onPauseSimulation)
                 .match(ResumeSimulation.class, this::onResumeSimulation)
                 .match(StopSimulation.class, this::onStopSimulation)
                 .match(RenderFrame.class, this::onRenderFrame)
+                .match(TickRateReport.class, this::onTickRateReport)
+                .match(ReplayReady.class, this::onReplayReady)
                 .build();
     }
 
@@ -70,6 +91,14 @@ public class ViewActor extends AbstractActor implements ChangeListener {
         });
     }
 
+    /* painted even when paused, to show the state a resume goes on from */
+    private void onCheckpointRestored(CheckpointRestored msg) {
+        RenderFrame restored = new RenderFrame(msg.tickId(), msg.boids());
+        long receivedNanos = System.nanoTime();
+        discardPendingFrame();
+        SwingUtilities.invokeLater(() -> update(frameRate, restored, receivedNanos));
+    }
+
     private void onPauseSimulation(PauseSimulation msg) {
         SwingUtilities.invokeLater(() -> {
             paused = true;
@@ -87,26 +116,82 @@ public class ViewActor extends AbstractActor implements ChangeListener {
     private void onStopSimulation(StopSimulation msg) {
         SwingUtilities.invokeLater(() -> {
             paused = false;
+            stopRepaintTimer();
+            discardPendingFrame();
             resetToInitialScreen();
         });
     }
 
     private void onRenderFrame(RenderFrame msg) {
+        PendingFrame dropped = latestFrame.getAndSet(new PendingFrame(msg, System.nanoTime()));
+        if (dropped != null) {
+            dropped.frame().boids().release();
+            droppedFrames.incrementAndGet();
+            Metrics.DROPPED_FRAMES.increment();
+        }
+    }
+
+    private void paintLatestFrame() {
+        if (paused && !replay) return;
+        PendingFrame pending = latestFrame.getAndSet(null);
+        if (pending == null) return;
+
+        long now = System.currentTimeMillis();
+        if (now - lastFrameTime > 0) {
+            frameRate = (int) (1000.0 / (now - lastFrameTime));
+        }
+        lastFrameTime = now;
+        update(frameRate, pending.frame(), pending.receivedNanos());
+    }
+
+    private void startRepaintTimer() {
+        stopRepaintTimer();
+        discardPendingFrame();
+        droppedFrames.set(0);
+        repaintTimer = new Timer(1000 / refreshRate(), e -> paintLatestFrame());
+        repaintTimer.start();
+    }
+
+    private void discardPendingFrame() {
+        PendingFrame pending = latestFrame.getAndSet(null);
+        if (pending != null) {
+            pending.frame().boids().release();
+        }
+    }
+
+    private void stopRepaintTimer() {
+        if (repaintTimer != null) {
+            repaintTimer.stop();
+            repaintTimer = null;
+        }
+    }
+
+    private static int refreshRate() {
+        DisplayMode mode = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode();
+        int rate = mode.getRefreshRate();
+        return rate == DisplayMode.REFRESH_RATE_UNKNOWN ? DEFAULT_REFRESH_RATE : rate;
+    }
+
+    private void onReplayReady(ReplayReady msg) {
         SwingUtilities.invokeLater(() -> {
-            if (paused) return;
+            replay = true;
+            if (simulationPanel != null) {
+                simulationPanel.showReplayControls(msg.firstTick(), msg.lastTick());
+            }
+        });
+    }
 
-            long now = System.currentTimeMillis();
-            if (now - lastFrameTime > 0) {
-                frameRate = (int) (1000.0 / (now - lastFrameTime));
+    private void onTickRateReport(TickRateReport msg) {
+        SwingUtilities.invokeLater(() -> {
+            if (simulationPanel != null) {
+                simulationPanel.updateTickRate(msg);
             }
-            lastFrameTime = now;
-            update(frameRate, msg);
         });
     }
 
-    public void update(int frameRate, RenderFrame msg) {
+    public void update(int frameRate, RenderFrame msg, long receivedNanos) {
         if (simulationPanel != null) {
-            simulationPanel.update(frameRate, msg);
+            simulationPanel.update(frameRate, droppedFrames.get(), msg, receivedNanos);
         }
     }
 
@@ -123,18 +208,15 @@ public class ViewActor extends AbstractActor implements ChangeListener {
     }
 
     public void startSimulation(int nBoids) {
-        this.nBoids = Optional.of(nBoids);
         guardianActor.tell(new StartSimulation(nBoids), getSelf());
     }
 
     public void showSimulationScreen(WorldReady msg) {
-        this.nBoids.ifPresentOrElse(
-                x -> simulationPanel = new SimulationPanel(this, environmentWidth, x, msg.states()),
-                () -> { throw new IllegalStateException("nBoids is not set before showSimulationScreen."); }
-        );
+        simulationPanel = new SimulationPanel(this, environmentWidth, msg.boids().size(), msg.boids());
         frame.setContentPane(simulationPanel);
         frame.revalidate();
         frame.repaint();
+        startRepaintTimer();
     }
 
     @Override
@@ -159,6 +241,18 @@ public class ViewActor extends AbstractActor implements ChangeListener {
         guardianActor.tell(new SuspendResumeSimulation(), getSelf());
     }
 
+    public void seekReplay(long tickId) {
+        guardianActor.tell(new SeekReplay(tickId), getSelf());
+    }
+
+    public void saveCheckpoint(String path) {
+        guardianActor.tell(new SaveCheckpoint(path), getSelf());
+    }
+
+    public void restoreCheckpoint(String path) {
+        guardianActor.tell(new RestoreCheckpoint(path), getSelf());
+    }
+
     public void stopSimulation() {
         guardianActor.tell(new StopSimulation(), getSelf());
     }
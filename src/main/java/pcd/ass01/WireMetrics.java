@@ -0,0 +1,44 @@
+package pcd.ass01;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * Bytes sent over the network by the simulation, i.e. serialized by
+ * BoidsSerializer (payloads only, without the transport framing).
+ * Each JVM counts its own bytes; regions hand their JVM's count over
+ * to the coordinator with each report, which sums them per tick.
+ *
+ */
+public final class WireMetrics {
+
+    private static final AtomicLong unreported = new AtomicLong();
+    private static final AtomicLong clusterBytes = new AtomicLong();
+    private static final AtomicLong clusterTicks = new AtomicLong();
+
+    private WireMetrics() {}
+
+    static void serialized(int bytes) {
+        unreported.addAndGet(bytes);
+    }
+
+    /** Bytes serialized by this JVM since the previous call. */
+    static long takeUnreported() {
+        return unreported.getAndSet(0);
+    }
+
+    /** Called by the coordinator with the bytes of all the JVMs for a tick. */
+    static void tickCompleted(long bytes) {
+        clusterBytes.addAndGet(bytes);
+        clusterTicks.incrementAndGet();
+    }
+
+    /** Bytes sent by all the JVMs of the cluster since startup, as known to the coordinator. */
+    public static long clusterBytes() {
+        return clusterBytes.get();
+    }
+
+    public static long clusterTicks() {
+        return clusterTicks.get();
+    }
+}
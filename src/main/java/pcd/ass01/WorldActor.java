@@ -1,45 +1,66 @@
 package pcd.ass01;
 
 import akka.actor.*;
-import pcd.ass01.BoidActor.BoidState;
+import akka.dispatch.RequiresMessageQueue;
+import akka.pattern.Patterns;
 import pcd.ass01.SimulationMessages.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 
 
-public class WorldActor extends AbstractActor {
+public class WorldActor extends AbstractActor implements RequiresMessageQueue<MeteredMailbox.MeteredSemantics> {
 
-    private Optional<ActorRef> guardian;
-    private final List<ActorRef> boidActors = new ArrayList<>();
-    private final Map<Integer, BoidState> currentStates = new HashMap<>();
+    private Optional<ActorRef> guardian = Optional.empty();
+    private Optional<SimulationEngine> engine = Optional.empty();
+    /* only grows, so that tick ids are never reused, not even by a restored run */
     private long currentTick = 0;
+    /* ticks of the current run are counted from here, see runTick */
+    private long tickBase = 0;
 
     private double sepW, aliW, cohW;
-    private double perceptionRadius, avoidRadius, maxSpeed;
-    private double height, width;
+    private final WorldParams params;
+    private final int nWorkers;
+    private final EngineType engineType;
 
-    private enum Phase { IDLE, UPDATING_VELOCITIES, UPDATING_POSITIONS }
+    private enum Phase { IDLE, STEPPING }
     private Phase phase = Phase.IDLE;
-    private int pendingResponses = 0;
+    /* checkpoints wait for the step in flight, if any, to complete */
+    private final List<Runnable> whenIdle = new ArrayList<>();
+    private long seed;
+    private FlockGenerator.Layout layout;
+    /* restored engines are suspended too, so that a restore does not resume a paused simulation */
+    private boolean suspended = false;
 
 
-    public WorldActor(double aliW, double cohW, double perceptionRadius, double maxSpeed, double avoidRadius, int height, int width, double sepW) {
+    /**
+     * The flock is updated by an engine of the given type, created anew for
+     * each simulation; nWorkers is its degree of parallelism (see EngineType).
+     */
+    public WorldActor(double aliW, double cohW, double perceptionRadius, double maxSpeed, double avoidRadius, int height, int width, double sepW,
+                      int nWorkers, EngineType engineType) {
         this.aliW = aliW;
         this.cohW = cohW;
-        this.perceptionRadius = perceptionRadius;
-        this.maxSpeed = maxSpeed;
-        this.avoidRadius = avoidRadius;
-        this.height = height;
-        this.width = width;
         this.sepW = sepW;
+        this.params = new WorldParams(width, height, perceptionRadius, avoidRadius, maxSpeed);
+        this.nWorkers = nWorkers;
+        this.engineType = engineType;
     }
 
     @Override
     public Receive createReceive() {
         return receiveBuilder()
                 .match(StartSimulation.class, this::onStartSimulation)
+                .match(StopSimulation.class, this::onStopSimulation)
+                .match(SaveCheckpoint.class, msg -> whenIdle(() -> saveCheckpoint(msg.path())))
+                .match(RestoreCheckpoint.class, msg -> whenIdle(() -> restoreCheckpoint(msg.path())))
+                .match(PauseSimulation.class, this::onPauseSimulation)
+                .match(ResumeSimulation.class, this::onResumeSimulation)
                 .match(TickGuardian.class, this::onTick)
-                .match(BoidUpdate.class, this::onBoidUpdate)
+                .match(StepCompleted.class, this::onStepCompleted)
+                .match(StepFailed.class, this::onStepFailed)
                 .match(SeparationChange.class, this::onSeparationChange)
                 .match(CohesionChange.class, this::onCohesionChange)
                 .match(AlignmentChange.class, this::onAlignmentChange)
@@ -47,68 +68,184 @@ public class WorldActor extends AbstractActor {
                 .build();
     }
 
+    @Override
+    public void postStop() {
+        engine.ifPresent(SimulationEngine::stop);
+    }
+
     private void onAlignmentChange(AlignmentChange alignmentChange) {
         this.aliW = alignmentChange.value();
+        updateWeights();
     }
 
     private void onCohesionChange(CohesionChange cohesionChange) {
         this.cohW = cohesionChange.value();
+        updateWeights();
     }
 
     private void onSeparationChange(SeparationChange separationChange) {
         this.sepW = separationChange.value();
+        updateWeights();
+    }
+
+    private void updateWeights() {
+        engine.ifPresent(e -> e.setWeights(sepW, aliW, cohW));
+    }
+
+    private void onPauseSimulation(PauseSimulation msg) {
+        suspended = true;
+        engine.ifPresent(SimulationEngine::suspend);
+    }
+
+    private void onResumeSimulation(ResumeSimulation msg) {
+        suspended = false;
+        engine.ifPresent(SimulationEngine::resume);
     }
 
     private void onStartSimulation(StartSimulation msg) {
         log("Starting simulation with " + msg.nBoids() + " boids");
 
-        boidActors.clear();
-        currentStates.clear();
-        for (int i = 0; i < msg.nBoids(); i++) {
-            P2d pos = new P2d(-width/2 + Math.random() * width, -height/2 + Math.random() * height);
-            V2d vel = new V2d(Math.random() * maxSpeed/2 - maxSpeed/4, Math.random() * maxSpeed/2 - maxSpeed/4);
-            BoidState initState = new BoidState(i, pos, vel);
-            currentStates.put(i, initState);
-            ActorRef boid = getContext().actorOf(Props.create(BoidActor.class, initState));
-            boidActors.add(boid);
+        seed = msg.seed();
+        layout = msg.layout();
+        tickBase = currentTick;
+        suspended = false;
+        BoidsView initial = FlockGenerator.generate(msg.nBoids(), msg.seed(), msg.layout(),
+                params.width(), params.height(), params.maxSpeed()).view();
+        startEngine(initial);
+        guardian.ifPresent(x -> x.tell(new WorldReady(initial), getSelf()));
+    }
+
+    private void startEngine(BoidsView initial) {
+        engine.ifPresent(SimulationEngine::stop);
+        phase = Phase.IDLE;
+        whenIdle.clear();
+        Metrics.resetAll();
+        SimulationEngine newEngine = engineType.create(getContext(), params, nWorkers);
+        newEngine.setWeights(sepW, aliW, cohW);
+        newEngine.start(initial);
+        if (suspended) newEngine.suspend();
+        engine = Optional.of(newEngine);
+    }
+
+    private void saveCheckpoint(String path) {
+        if (engine.isEmpty()) {
+            log("No simulation to checkpoint");
+            return;
         }
-        guardian.ifPresent(x -> x.tell(new WorldReady(new ArrayList<>(currentStates.values())), getSelf()));
+        long start = System.nanoTime();
+        BoidsView boids = engine.get().state();
+        try {
+            new Checkpoint(runTick(), seed, layout, sepW, aliW, cohW, boids).write(Path.of(path));
+            log(String.format("Checkpoint of %d boids at tick %d saved to %s in %.1f ms",
+                    boids.size(), runTick(), path, (System.nanoTime() - start) / 1e6));
+        } catch (IOException e) {
+            log("Cannot save checkpoint to " + path + ": " + e);
+        }
+    }
 
+    /*
+     * The restored run goes on from the tick of the checkpoint, as seen by
+     * the view and the recorder, while the ids of its steps keep growing:
+     * a step of the previous engine still in flight, e.g. after a stop,
+     * cannot be taken for one of the restored run.
+     * A restore without a simulation to replace starts one, as StartSimulation.
+     */
+    private void restoreCheckpoint(String path) {
+        long start = System.nanoTime();
+        Checkpoint checkpoint;
+        try {
+            checkpoint = Checkpoint.read(Path.of(path));
+        } catch (IOException e) {
+            log("Cannot restore checkpoint from " + path + ": " + e);
+            return;
+        }
+        tickBase = currentTick - checkpoint.tickId();
+        seed = checkpoint.seed();
+        layout = checkpoint.layout();
+        sepW = checkpoint.sepW();
+        aliW = checkpoint.aliW();
+        cohW = checkpoint.cohW();
+        boolean replacing = engine.isPresent();
+        if (!replacing) suspended = false;
+        startEngine(checkpoint.boids());
+        guardian.ifPresent(x -> x.tell(replacing
+                ? new CheckpointRestored(checkpoint.tickId(), checkpoint.boids())
+                : new WorldReady(checkpoint.boids()), getSelf()));
+        log(String.format("Checkpoint of %d boids at tick %d restored from %s in %.1f ms",
+                checkpoint.boids().size(), checkpoint.tickId(), path, (System.nanoTime() - start) / 1e6));
+    }
+
+    private void whenIdle(Runnable action) {
+        if (phase == Phase.IDLE) {
+            action.run();
+        } else {
+            whenIdle.add(action);
+        }
+    }
+
+    private void runWhenIdle() {
+        List<Runnable> actions = new ArrayList<>(whenIdle);
+        whenIdle.clear();
+        actions.forEach(Runnable::run);
+    }
+
+    private void onStopSimulation(StopSimulation msg) {
+        engine.ifPresent(SimulationEngine::stop);
+        engine = Optional.empty();
+        suspended = false;
+        phase = Phase.IDLE;
+        runWhenIdle();
     }
 
     private void onTick(TickGuardian msg) {
+        if (engine.isEmpty()) return;
         if (phase != Phase.IDLE) {
-            log("Ignoring Tick, still processing previous step");
+            Metrics.DROPPED_TICKS.increment();
+            FlightEvents.DroppedTick.commit("world", runTick() - 1);
             return;
         }
         currentTick++;
-        phase = Phase.UPDATING_VELOCITIES;
+        phase = Phase.STEPPING;
 
-        List<BoidState> statesList = new ArrayList<>(currentStates.values());
-        Snapshot snap = new Snapshot(currentTick, statesList, sepW, aliW, cohW,
-                perceptionRadius, avoidRadius, maxSpeed);
+        long tickId = currentTick;
+        Metrics.messagesSent(2);
+        Patterns.pipe(engine.get().step(tickId).<Command>handle((boids, e) -> e == null
+                        ? new StepCompleted(tickId, boids)
+                        : new StepFailed(tickId, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e)),
+                getContext().getDispatcher()).to(getSelf());
+    }
 
-        for (ActorRef boid : boidActors) {
-            boid.tell(snap, getSelf());
+    /*
+     * Steps are tagged with their tick: the completion or the failure of an
+     * older tick, e.g. from the engine of a previous run, is dropped. The tick counter is
+     * never reset, so ids are not reused across runs.
+     */
+    private void onStepCompleted(StepCompleted msg) {
+        if (phase != Phase.STEPPING || msg.tickId() != currentTick) {
+            msg.boids().release();
+            return;
         }
+        Metrics.messagesSent(1);
+        Metrics.tickCompleted();
+        guardian.ifPresentOrElse((x) -> x.tell(new RenderFrame(runTick(), msg.boids()), getSelf()),
+                () -> msg.boids().release());
+        phase = Phase.IDLE;
+        runWhenIdle();
+    }
 
-        phase = Phase.UPDATING_POSITIONS;
-        pendingResponses = boidActors.size();
-        for (ActorRef boid : boidActors) {
-            boid.tell(new Tick(width, height, -width/2, width/2, -height/2, height/2), getSelf());
+    private void onStepFailed(StepFailed failure) {
+        if (phase != Phase.STEPPING || failure.tickId() != currentTick) {
+            log("Dropping failure of stale step " + failure.tickId() + ": " + failure.cause());
+            return;
         }
+        log("Step " + currentTick + " failed: " + failure.cause());
+        phase = Phase.IDLE;
+        runWhenIdle();
     }
 
-    private void onBoidUpdate(BoidUpdate upd) {
-        currentStates.put(upd.id(),
-                new BoidState(upd.id(), upd.pos(), upd.vel()));
-
-        pendingResponses--;
-        if (pendingResponses == 0 && phase == Phase.UPDATING_POSITIONS) {
-            System.out.println("Boidstate lenght: " + boidActors.size());
-            guardian.ifPresent((x) -> x.tell(new RenderFrame(currentTick, new ArrayList<>(currentStates.values())), getSelf()));
-            phase = Phase.IDLE;
-        }
+    /** Tick of the current run: 0 when started, or the tick of the checkpoint it was restored from. */
+    private long runTick() {
+        return currentTick - tickBase;
     }
 
     private void log(String msg) {
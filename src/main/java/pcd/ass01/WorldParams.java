@@ -0,0 +1,39 @@
+package pcd.ass01;
+
+import pcd.ass01.SimulationMessages.*;
+
+/**
+ *
+ * Fixed parameters of a simulated world, shared by the engines.
+ * The environment is centred in the origin.
+ *
+ */
+public record WorldParams(double width, double height, double perceptionRadius, double avoidRadius, double maxSpeed) {
+
+    public Bounds bounds() {
+        return new Bounds(width, height, -width/2, width/2, -height/2, height/2);
+    }
+
+    public SpatialGrid grid(BoidsView boids) {
+        return grid(boids, null);
+    }
+
+    /** Grid of boids stored out of id order, see SpatialGrid.build. */
+    public SpatialGrid grid(BoidsView boids, int[] slotOf) {
+        return SpatialGrid.build(boids, -width/2, -height/2, width, height, perceptionRadius, slotOf);
+    }
+
+    public Snapshot snapshot(long tickId, BoidsView boids, double sepW, double aliW, double cohW) {
+        return snapshot(tickId, boids, null, sepW, aliW, cohW);
+    }
+
+    public Snapshot snapshot(long tickId, BoidsView boids, int[] slotOf, double sepW, double aliW, double cohW) {
+        FlightEvents.SnapshotBuild event = new FlightEvents.SnapshotBuild();
+        event.begin();
+        long start = System.nanoTime();
+        SpatialGrid grid = grid(boids, slotOf);
+        Metrics.SNAPSHOT_BUILD.record(System.nanoTime() - start);
+        event.commit(tickId, boids.size());
+        return new Snapshot(tickId, grid, sepW, aliW, cohW, perceptionRadius, avoidRadius, maxSpeed);
+    }
+}
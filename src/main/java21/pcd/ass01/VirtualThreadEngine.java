@@ -0,0 +1,32 @@
+package pcd.ass01;
+
+/**
+ *
+ * ThreadedEngine running each group of boids on its own virtual thread.
+ * Groups are small, so large flocks get hundreds of virtual threads
+ * multiplexed over the carrier threads.
+ * Requires the java21 build profile.
+ *
+ */
+public class VirtualThreadEngine extends ThreadedEngine {
+
+    private static final int GROUP_SIZE = 256;
+
+    private final int minGroups;
+
+    /** @param nWorkers minimum number of groups, hence of virtual threads */
+    public VirtualThreadEngine(WorldParams params, int nWorkers) {
+        super(params);
+        this.minGroups = nWorkers;
+    }
+
+    @Override
+    protected int groupCount(int nBoids) {
+        return Math.max(minGroups, (nBoids + GROUP_SIZE - 1) / GROUP_SIZE);
+    }
+
+    @Override
+    protected Thread startWorker(Runnable group, String name) {
+        return Thread.ofVirtual().name(name).start(group);
+    }
+}
@@ -0,0 +1,94 @@
+package pcd.ass01;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import pcd.ass01.SimulationMessages.*;
+
+/**
+ *
+ * Flocking kernel on the Vector API. The candidates of a boid are the
+ * contiguous, grid-ordered boids of each row of its 3x3 block of cells:
+ * they are loaded a vector at a time and the perception and avoidance
+ * tests become lane masks for the accumulation.
+ * The boid itself is accumulated with the others and subtracted at the
+ * end. Sums are computed lane-wise, hence in a different order than in
+ * the scalar kernel, so results agree within rounding
+ * (see FlockingKernelTest and BoidsBenchmark --verify).
+ * Compiled by the vector profile; needs --add-modules jdk.incubator.vector
+ * and Java 21 to be intrinsified: on 17 the masked operations are boxed.
+ *
+ */
+public final class VectorKernel implements FlockingKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void steer(Snapshot snap, int id, double x, double y, double vx, double vy, double[] out) {
+        SpatialGrid grid = snap.grid();
+        double[] gx = grid.xs(), gy = grid.ys(), gvx = grid.vxs(), gvy = grid.vys();
+        int n = gx.length;
+        double perceptionRadius = snap.perceptionRadius();
+        double avoidRadius = snap.avoidRadius();
+
+        DoubleVector px = DoubleVector.broadcast(SPECIES, x);
+        DoubleVector py = DoubleVector.broadcast(SPECIES, y);
+        DoubleVector sumVx = DoubleVector.zero(SPECIES), sumVy = DoubleVector.zero(SPECIES);
+        DoubleVector sumX = DoubleVector.zero(SPECIES), sumY = DoubleVector.zero(SPECIES);
+        DoubleVector sepDx = DoubleVector.zero(SPECIES), sepDy = DoubleVector.zero(SPECIES);
+        int nearby = 0, avoided = 0;
+
+        int cx = grid.cellX(x);
+        int cy = grid.cellY(y);
+        int minCx = Math.max(0, cx - 1);
+        int maxCx = Math.min(grid.cols() - 1, cx + 1);
+        int maxCy = Math.min(grid.rows() - 1, cy + 1);
+        for (int row = Math.max(0, cy - 1); row <= maxCy; row++) {
+            int start = grid.cellStart(minCx, row);
+            int end = grid.cellEnd(maxCx, row);
+            for (int i = start; i < end; i += SPECIES.length()) {
+                VectorMask<Double> valid = SPECIES.indexInRange(i, end);
+                DoubleVector ox, oy, ovx, ovy;
+                if (i + SPECIES.length() <= n) {
+                    /* lanes past the end of the row are loaded but masked out below */
+                    ox = DoubleVector.fromArray(SPECIES, gx, i);
+                    oy = DoubleVector.fromArray(SPECIES, gy, i);
+                    ovx = DoubleVector.fromArray(SPECIES, gvx, i);
+                    ovy = DoubleVector.fromArray(SPECIES, gvy, i);
+                } else {
+                    ox = DoubleVector.fromArray(SPECIES, gx, i, valid);
+                    oy = DoubleVector.fromArray(SPECIES, gy, i, valid);
+                    ovx = DoubleVector.fromArray(SPECIES, gvx, i, valid);
+                    ovy = DoubleVector.fromArray(SPECIES, gvy, i, valid);
+                }
+                DoubleVector dx = ox.sub(px);
+                DoubleVector dy = oy.sub(py);
+                DoubleVector distance = dx.mul(dx).add(dy.mul(dy)).lanewise(VectorOperators.SQRT);
+
+                VectorMask<Double> near = distance.compare(VectorOperators.LT, perceptionRadius).and(valid);
+                nearby += near.trueCount();
+                sumVx = sumVx.add(ovx, near);
+                sumVy = sumVy.add(ovy, near);
+                sumX = sumX.add(ox, near);
+                sumY = sumY.add(oy, near);
+
+                VectorMask<Double> close = distance.compare(VectorOperators.LT, avoidRadius).and(near);
+                avoided += close.trueCount();
+                /* x - ox == -(ox - x) exactly */
+                sepDx = sepDx.sub(dx, close);
+                sepDy = sepDy.sub(dy, close);
+            }
+        }
+
+        /* the boid found itself at distance 0, adding nothing to the separation */
+        BoidRules.applyRules(snap, x, y, vx, vy, nearby - 1, avoided - 1,
+                sumVx.reduceLanes(VectorOperators.ADD) - vx,
+                sumVy.reduceLanes(VectorOperators.ADD) - vy,
+                sumX.reduceLanes(VectorOperators.ADD) - x,
+                sumY.reduceLanes(VectorOperators.ADD) - y,
+                sepDx.reduceLanes(VectorOperators.ADD),
+                sepDy.reduceLanes(VectorOperators.ADD),
+                out);
+    }
+}
@@ -0,0 +1,80 @@
+package pcd.ass01;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+import pcd.ass01.BoidsBenchmark.KernelError;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static pcd.ass01.BoidsSimulation.*;
+
+/**
+ *
+ * The kernels against the scalar one, over the first ticks of a flock:
+ * the exact ones must agree within VERIFY_TOLERANCE, the approximate
+ * far field within the error recorded below.
+ *
+ */
+class FlockingKernelTest {
+
+    private static final WorldParams PARAMS =
+            new WorldParams(ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, PERCEPTION_RADIUS, AVOID_RADIUS, MAX_SPEED);
+    private static final int BOIDS = 2000;
+    private static final long SEED = 42;
+    private static final int TICKS = 20;
+
+    @ParameterizedTest
+    @EnumSource(FlockGenerator.Layout.class)
+    void verletListsMatchTheScalarKernel(FlockGenerator.Layout layout) {
+        assertExact(new VerletLists(BOIDS, PARAMS, VerletLists.configuredSkin()), layout);
+    }
+
+    @ParameterizedTest
+    @EnumSource(FlockGenerator.Layout.class)
+    void farFieldWithExactBordersMatchesTheScalarKernel(FlockGenerator.Layout layout) {
+        assertExact(new FarFieldKernel(PARAMS, 4, false), layout);
+    }
+
+    /* compiled and run only by the vector profile */
+    @ParameterizedTest
+    @EnumSource(FlockGenerator.Layout.class)
+    void vectorKernelMatchesTheScalarKernel(FlockGenerator.Layout layout) {
+        FlockingKernel kernel;
+        try {
+            kernel = (FlockingKernel) Class.forName("pcd.ass01.VectorKernel").getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            assumeTrue(false, "Vector kernel not available: " + e);
+            return;
+        }
+        assertExact(kernel, layout);
+    }
+
+    /*
+     * Error of centre borders with the default 4 cells per radius, in units of
+     * velocity (maxSpeed 4), measured on this flock and rounded up: a change of
+     * the kernel that makes it worse fails here. Fewer cells must be worse.
+     */
+    @ParameterizedTest
+    @CsvSource({ "UNIFORM, 0.30, 3.5", "CLUSTERED, 0.08, 2.5" })
+    void farFieldWithCentreBordersStaysWithinTheRecordedError(FlockGenerator.Layout layout, double meanBound, double maxBound) {
+        KernelError fine = compare(new FarFieldKernel(PARAMS, 4, true), layout);
+        KernelError coarse = compare(new FarFieldKernel(PARAMS, 2, true), layout);
+        System.out.printf("Far field, centre borders, %s: 4 cells/radius mean %.3e max %.3e, 2 cells/radius mean %.3e max %.3e%n",
+                layout, fine.mean(), fine.max(), coarse.mean(), coarse.max());
+        assertTrue(fine.mean() <= meanBound, "mean error " + fine.mean() + " over " + meanBound);
+        assertTrue(fine.max() <= maxBound, "max error " + fine.max() + " over " + maxBound);
+        assertTrue(fine.mean() < coarse.mean(), "finer cells should be more accurate");
+    }
+
+    private static void assertExact(FlockingKernel kernel, FlockGenerator.Layout layout) {
+        KernelError error = compare(kernel, layout);
+        assertEquals(0, error.mismatches(), "velocities off by more than " + BoidsBenchmark.VERIFY_TOLERANCE
+                + ", max error " + error.max());
+    }
+
+    private static KernelError compare(FlockingKernel kernel, FlockGenerator.Layout layout) {
+        return BoidsBenchmark.compareWithScalar(kernel, PARAMS, BOIDS, SEED, layout, TICKS);
+    }
+}
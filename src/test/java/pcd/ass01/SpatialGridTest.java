@@ -0,0 +1,59 @@
+package pcd.ass01;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import pcd.ass01.SimulationMessages.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static pcd.ass01.BoidsSimulation.*;
+
+/**
+ *
+ * The grid lookup of BoidRules.getNearbyBoids against a scan of the whole
+ * flock: the neighbour sets must be the same for every boid.
+ *
+ */
+class SpatialGridTest {
+
+    private static final WorldParams PARAMS =
+            new WorldParams(ENVIRONMENT_WIDTH, ENVIRONMENT_HEIGHT, PERCEPTION_RADIUS, AVOID_RADIUS, MAX_SPEED);
+
+    @ParameterizedTest
+    @EnumSource(FlockGenerator.Layout.class)
+    void gridFindsTheNeighboursOfTheBruteForceScan(FlockGenerator.Layout layout) {
+        BoidsView boids = FlockGenerator.generate(2000, 42, layout, PARAMS.width(), PARAMS.height(), PARAMS.maxSpeed()).view();
+        assertSameNeighbours(boids);
+    }
+
+    /* boids on the borders and in the corners fall in the first and last cells */
+    @Test
+    void gridFindsTheNeighboursOnTheBorders() {
+        double min = -ENVIRONMENT_WIDTH / 2.0, max = Math.nextDown(ENVIRONMENT_WIDTH / 2.0);
+        double[] coords = { min, min + 1, min + PERCEPTION_RADIUS, -1, 0, max - PERCEPTION_RADIUS, max - 1, max };
+        int n = coords.length * coords.length;
+        double[] x = new double[n], y = new double[n], v = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = coords[i % coords.length];
+            y[i] = coords[i / coords.length];
+        }
+        assertSameNeighbours(new BoidsView(x, y, v, v.clone()));
+    }
+
+    private static void assertSameNeighbours(BoidsView boids) {
+        Snapshot snap = PARAMS.snapshot(0, boids, SEPARATION_WEIGHT, ALIGNMENT_WEIGHT, COHESION_WEIGHT);
+        for (int id = 0; id < boids.size(); id++) {
+            P2d pos = new P2d(boids.x(id), boids.y(id));
+            Set<Integer> expected = new HashSet<>();
+            for (int other = 0; other < boids.size(); other++) {
+                if (other != id && pos.distance(new P2d(boids.x(other), boids.y(other))) < PERCEPTION_RADIUS) {
+                    expected.add(other);
+                }
+            }
+            assertEquals(expected, new HashSet<>(BoidRules.getNearbyBoids(snap, id, pos)), "neighbours of boid " + id);
+        }
+    }
+}